@@ -0,0 +1,62 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.util.List;
+import java.util.Objects;
+
+final class BundleCacheKey {
+	private final List<ClassToken> classes;
+
+	private final OutputConfig config;
+
+	private final boolean withAssociations;
+
+	BundleCacheKey(List<ClassToken> classes, OutputConfig config,
+			boolean withAssociations) {
+		this.classes = classes;
+		this.config = OutputConfig.canonical(config);
+		this.withAssociations = withAssociations;
+	}
+
+	OutputConfig getConfig() {
+		return this.config;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = 31 * Objects.hashCode(this.classes) + Objects.hashCode(this.config);
+		return 31 * result + Boolean.hashCode(this.withAssociations);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		BundleCacheKey other = (BundleCacheKey) obj;
+		if (this.withAssociations != other.withAssociations
+				|| !Objects.equals(this.classes, other.classes)
+				|| !Objects.equals(this.config, other.config)) {
+			return false;
+		}
+		return true;
+	}
+
+}
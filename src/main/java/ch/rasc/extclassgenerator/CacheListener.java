@@ -0,0 +1,31 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+/**
+ * Listener that is notified when an entry is removed from one of the caches of the
+ * {@link ModelGenerator}. Listeners are called synchronously by the thread that removes
+ * the entry and should return quickly. Exceptions thrown by a listener are logged and
+ * ignored.
+ *
+ * @see ModelGenerator#addCacheListener(CacheListener)
+ */
+@FunctionalInterface
+public interface CacheListener {
+
+	void onRemoval(CacheRemovalEvent event);
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+/**
+ * Creates the caches of the {@link ModelGenerator}. Register an implementation with
+ * {@link ModelGenerator#setCacheProvider(CacheProvider)} to back the caches with an
+ * existing cache infrastructure. By default the caches are weighted caches that evict
+ * the least frequently used entries when they grow beyond their maximum weight.
+ */
+public interface CacheProvider {
+
+	/**
+	 * Creates a new, empty cache.
+	 *
+	 * @param spec name, size limit, weigher, pinning and removal listener of the cache
+	 */
+	<K, V> GeneratorCache<K, V> createCache(CacheSpec<K, V> spec);
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes an entry that has been removed from one of the caches of the
+ * {@link ModelGenerator}
+ */
+public final class CacheRemovalEvent {
+
+	/**
+	 * Kind of the removed entry
+	 */
+	public enum EntryType {
+		/**
+		 * Model created by introspecting a class
+		 */
+		MODEL,
+
+		/**
+		 * Javascript code of one model
+		 */
+		JAVASCRIPT,
+
+		/**
+		 * Javascript code of several models
+		 */
+		BUNDLE
+	}
+
+	private final EntryType entryType;
+
+	private final RemovalCause cause;
+
+	private final List<String> classNames;
+
+	private final String modelName;
+
+	private final OutputConfig outputConfig;
+
+	CacheRemovalEvent(EntryType entryType, RemovalCause cause, List<String> classNames,
+			String modelName, OutputConfig outputConfig) {
+		this.entryType = entryType;
+		this.cause = cause;
+		this.classNames = Collections.unmodifiableList(classNames);
+		this.modelName = modelName;
+		this.outputConfig = outputConfig;
+	}
+
+	public EntryType getEntryType() {
+		return this.entryType;
+	}
+
+	public RemovalCause getCause() {
+		return this.cause;
+	}
+
+	/**
+	 * @return the introspected class of a {@link EntryType#MODEL}, the classes of a
+	 * {@link EntryType#BUNDLE} or an empty list for {@link EntryType#JAVASCRIPT}
+	 */
+	public List<String> getClassNames() {
+		return this.classNames;
+	}
+
+	/**
+	 * @return the name of the model or null for a {@link EntryType#BUNDLE}
+	 */
+	public String getModelName() {
+		return this.modelName;
+	}
+
+	/**
+	 * @return the immutable config the code has been generated with or null for a
+	 * {@link EntryType#MODEL}, which is shared by all rendering options
+	 */
+	public OutputConfig getOutputConfig() {
+		return this.outputConfig;
+	}
+
+}
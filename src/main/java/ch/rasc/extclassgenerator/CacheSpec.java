@@ -0,0 +1,88 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Describes a cache that a {@link CacheProvider} has to create
+ */
+public final class CacheSpec<K, V> {
+
+	/**
+	 * Name of the cache with the introspected models
+	 */
+	public static final String MODEL_CACHE = "model";
+
+	/**
+	 * Name of the cache with the generated Javascript code of models and bundles
+	 */
+	public static final String JS_CACHE = "js";
+
+	private final String name;
+
+	private final long maximumWeight;
+
+	private final ToLongFunction<? super V> weigher;
+
+	private final Predicate<? super K> pinned;
+
+	private final GeneratorCache.RemovalListener<? super K, ? super V> removalListener;
+
+	CacheSpec(String name, long maximumWeight, ToLongFunction<? super V> weigher,
+			Predicate<? super K> pinned,
+			GeneratorCache.RemovalListener<? super K, ? super V> removalListener) {
+		this.name = name;
+		this.maximumWeight = maximumWeight;
+		this.weigher = weigher;
+		this.pinned = pinned;
+		this.removalListener = removalListener;
+	}
+
+	/**
+	 * @return {@link #MODEL_CACHE} or {@link #JS_CACHE}
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return the maximum total weight of all entries in bytes
+	 */
+	public long getMaximumWeight() {
+		return this.maximumWeight;
+	}
+
+	/**
+	 * @return estimates the memory used by a value in bytes
+	 */
+	public ToLongFunction<? super V> getWeigher() {
+		return this.weigher;
+	}
+
+	/**
+	 * @return matches the keys of entries that should not be evicted
+	 */
+	public Predicate<? super K> getPinned() {
+		return this.pinned;
+	}
+
+	public GeneratorCache.RemovalListener<? super K, ? super V> getRemovalListener() {
+		return this.removalListener;
+	}
+
+}
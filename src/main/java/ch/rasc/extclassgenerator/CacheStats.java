@@ -0,0 +1,69 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+/**
+ * Snapshot of the statistics of a {@link GeneratorCache}
+ */
+public final class CacheStats {
+
+	private final long hitCount;
+
+	private final long missCount;
+
+	private final long evictionCount;
+
+	private final long entryCount;
+
+	private final long weightedSize;
+
+	public CacheStats(long hitCount, long missCount, long evictionCount,
+			long entryCount, long weightedSize) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.entryCount = entryCount;
+		this.weightedSize = weightedSize;
+	}
+
+	public long getHitCount() {
+		return this.hitCount;
+	}
+
+	public long getMissCount() {
+		return this.missCount;
+	}
+
+	/**
+	 * @return number of entries removed because the cache grew beyond its maximum
+	 * weight
+	 */
+	public long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	public long getEntryCount() {
+		return this.entryCount;
+	}
+
+	/**
+	 * @return the estimated memory used by all entries in bytes
+	 */
+	public long getWeightedSize() {
+		return this.weightedSize;
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Identity of a {@link Class} object used in cache keys. There is exactly one token per
+ * class, stored with {@link ClassValue}, so equal tokens mean the same class from the
+ * same classloader and two classes with the same name from different classloaders (two
+ * webapps, a redeployed webapp) never share a cache entry. Tokens compare by identity and
+ * use the identity hash code, no String hashing is needed.
+ * <p>
+ * A token only references its class weakly and does not prevent the classloader from
+ * being unloaded. Unloaded classes are counted by {@link #unloadedCount()}.
+ * <p>
+ * The token also keeps the cache keys of its class per canonical {@link OutputConfig},
+ * so a lookup of a cached model or its code does not allocate a key.
+ */
+final class ClassToken {
+
+	private static final ReferenceQueue<Class<?>> unloadedClasses = new ReferenceQueue<>();
+
+	private static final AtomicLong unloadedCounter = new AtomicLong();
+
+	private static final ClassValue<ClassToken> tokens = new ClassValue<>() {
+		@Override
+		protected ClassToken computeValue(Class<?> type) {
+			return new ClassToken(type);
+		}
+	};
+
+	private final String className;
+
+	private final WeakReference<Class<?>> classReference;
+
+	private final String modelName;
+
+	private final ConcurrentMap<OutputConfig, ModelCacheKey> modelCacheKeys = new ConcurrentHashMap<>(
+			4);
+
+	private final ConcurrentMap<OutputConfig, JsCacheKey> jsCacheKeys = new ConcurrentHashMap<>(
+			4);
+
+	private ClassToken(Class<?> clazz) {
+		this.className = clazz.getName();
+		this.classReference = new WeakReference<>(clazz, unloadedClasses);
+		this.modelName = ModelGenerator.getModelName(clazz);
+	}
+
+	static ClassToken of(Class<?> clazz) {
+		return tokens.get(clazz);
+	}
+
+	/**
+	 * @return the number of token classes that have been unloaded so far. A caller that
+	 * remembers the last returned value knows if classes have been unloaded since then.
+	 * Drains the queue.
+	 */
+	static long unloadedCount() {
+		while (unloadedClasses.poll() != null) {
+			unloadedCounter.incrementAndGet();
+		}
+		return unloadedCounter.get();
+	}
+
+	String getClassName() {
+		return this.className;
+	}
+
+	/**
+	 * @param config a canonical config, see {@link OutputConfig#canonical(OutputConfig)}
+	 * @return the key of the model of this class in the model cache
+	 */
+	ModelCacheKey modelCacheKey(OutputConfig config) {
+		ModelCacheKey key = this.modelCacheKeys.get(config);
+		if (key == null) {
+			key = this.modelCacheKeys.computeIfAbsent(config,
+					c -> ModelCacheKey.of(this, c));
+		}
+		return key;
+	}
+
+	/**
+	 * @param config a canonical config, see {@link OutputConfig#canonical(OutputConfig)}
+	 * @return the key of the code of the introspected model of this class in the JS
+	 * cache
+	 */
+	JsCacheKey jsCacheKey(OutputConfig config) {
+		JsCacheKey key = this.jsCacheKeys.get(config);
+		if (key == null) {
+			key = this.jsCacheKeys.computeIfAbsent(config,
+					c -> new JsCacheKey(this, this.modelName, c));
+		}
+		return key;
+	}
+
+	/**
+	 * @return the class or null if it has been unloaded
+	 */
+	Class<?> getType() {
+		return this.classReference.get();
+	}
+
+	boolean isUnloaded() {
+		return this.classReference.get() == null;
+	}
+
+	@Override
+	public String toString() {
+		return this.className;
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Content codings the generator is able to serve. The compressed variants are created
+ * once per cache entry, see {@link JsCacheEntry}.
+ */
+enum ContentEncoding {
+
+	IDENTITY(null), GZIP("gzip"), DEFLATE("deflate");
+
+	private final String headerValue;
+
+	ContentEncoding(String headerValue) {
+		this.headerValue = headerValue;
+	}
+
+	/**
+	 * @return the value for the Content-Encoding header or null for {@link #IDENTITY}
+	 */
+	String getHeaderValue() {
+		return this.headerValue;
+	}
+
+	byte[] encode(byte[] data) {
+		if (this == IDENTITY) {
+			return data;
+		}
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 2 + 32);
+		try (OutputStream os = this == GZIP ? new GZIPOutputStream(bos)
+				: new DeflaterOutputStream(bos)) {
+			os.write(data);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bos.toByteArray();
+	}
+
+	/**
+	 * Selects the content coding based on the value of the Accept-Encoding request
+	 * header. gzip is preferred over deflate when the client weights both equally.
+	 *
+	 * @param acceptEncoding value of the Accept-Encoding header, may be null
+	 * @return the selected content coding, never null
+	 */
+	static ContentEncoding negotiate(String acceptEncoding) {
+		if (!StringUtils.hasText(acceptEncoding)) {
+			return IDENTITY;
+		}
+
+		float gzipQuality = -1;
+		float deflateQuality = -1;
+		float wildcardQuality = -1;
+
+		for (String part : StringUtils.tokenizeToStringArray(acceptEncoding, ",")) {
+			String coding = part;
+			float quality = 1;
+
+			int semicolon = part.indexOf(';');
+			if (semicolon != -1) {
+				coding = part.substring(0, semicolon).strip();
+				quality = parseQuality(part.substring(semicolon + 1));
+			}
+
+			if ("gzip".equalsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding)) {
+				gzipQuality = Math.max(gzipQuality, quality);
+			}
+			else if ("deflate".equalsIgnoreCase(coding)) {
+				deflateQuality = Math.max(deflateQuality, quality);
+			}
+			else if ("*".equals(coding)) {
+				wildcardQuality = quality;
+			}
+		}
+
+		if (gzipQuality < 0) {
+			gzipQuality = wildcardQuality;
+		}
+		if (deflateQuality < 0) {
+			deflateQuality = wildcardQuality;
+		}
+
+		if (gzipQuality > 0 && gzipQuality >= deflateQuality) {
+			return GZIP;
+		}
+		if (deflateQuality > 0) {
+			return DEFLATE;
+		}
+		return IDENTITY;
+	}
+
+	private static float parseQuality(String parameters) {
+		for (String parameter : StringUtils.tokenizeToStringArray(parameters, ";")) {
+			if (parameter.length() > 2 && (parameter.charAt(0) == 'q'
+					|| parameter.charAt(0) == 'Q') && parameter.charAt(1) == '=') {
+				try {
+					return Float.parseFloat(parameter.substring(2));
+				}
+				catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+
+}
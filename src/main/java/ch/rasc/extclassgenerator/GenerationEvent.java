@@ -0,0 +1,186 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+/**
+ * Describes one call of the generator, see {@link GenerationListener}
+ */
+public final class GenerationEvent {
+
+	/**
+	 * The method that has been called
+	 */
+	public enum Operation {
+		/**
+		 * {@code createModel}
+		 */
+		CREATE_MODEL,
+
+		/**
+		 * {@code generateJavascript}
+		 */
+		GENERATE_JAVASCRIPT,
+
+		/**
+		 * {@code writeModel}, {@code writeModels} and {@code writeModelWithAssociations}
+		 */
+		WRITE_MODEL
+	}
+
+	/**
+	 * Part of the work done during a call
+	 */
+	public enum Phase {
+		/**
+		 * Introspection of classes
+		 */
+		INTROSPECTION,
+
+		/**
+		 * Serialization of models to Javascript code
+		 */
+		RENDERING,
+
+		/**
+		 * UTF-8 encoding, compression and ETag computation
+		 */
+		ENCODING,
+
+		/**
+		 * Writing the response
+		 */
+		WRITING
+	}
+
+	private final Operation operation;
+
+	private final String className;
+
+	private final String modelName;
+
+	private final OutputConfig outputConfig;
+
+	private final boolean cacheHit;
+
+	private final boolean coalesced;
+
+	private final boolean notModified;
+
+	private final long outputSize;
+
+	private final long durationNanos;
+
+	private final long[] phaseNanos;
+
+	private final boolean slow;
+
+	GenerationEvent(Operation operation, String className, String modelName,
+			OutputConfig outputConfig, boolean cacheHit, boolean coalesced,
+			boolean notModified, long outputSize, long durationNanos, long[] phaseNanos,
+			boolean slow) {
+		this.operation = operation;
+		this.className = className;
+		this.modelName = modelName;
+		this.outputConfig = outputConfig;
+		this.cacheHit = cacheHit;
+		this.coalesced = coalesced;
+		this.notModified = notModified;
+		this.outputSize = outputSize;
+		this.durationNanos = durationNanos;
+		this.phaseNanos = phaseNanos;
+		this.slow = slow;
+	}
+
+	public Operation getOperation() {
+		return this.operation;
+	}
+
+	/**
+	 * @return the model class or the root class of a bundle, null if the call was made
+	 * with a {@link ModelBean} or a collection of classes
+	 */
+	public String getClassName() {
+		return this.className;
+	}
+
+	/**
+	 * @return the name of the model, null for bundles
+	 */
+	public String getModelName() {
+		return this.modelName;
+	}
+
+	public OutputConfig getOutputConfig() {
+		return this.outputConfig;
+	}
+
+	/**
+	 * @return true if neither a class had to be introspected nor a model had to be
+	 * rendered, neither by this call nor by another thread this call waited for
+	 */
+	public boolean isCacheHit() {
+		return this.cacheHit;
+	}
+
+	/**
+	 * @return true if the call waited for a model that another thread generated at the
+	 * same time. Such a call is not a cache hit.
+	 */
+	public boolean isCoalesced() {
+		return this.coalesced;
+	}
+
+	/**
+	 * @return true if {@code writeModel} answered with a 304 response
+	 */
+	public boolean isNotModified() {
+		return this.notModified;
+	}
+
+	/**
+	 * @return number of characters of the generated code ({@code generateJavascript}),
+	 * number of bytes written into the response ({@code writeModel}, 0 for a 304
+	 * response) or -1 for {@code createModel} and for code that is rendered directly into
+	 * a writer or stream
+	 */
+	public long getOutputSize() {
+		return this.outputSize;
+	}
+
+	/**
+	 * @return the duration of the whole call in nanoseconds
+	 */
+	public long getDurationNanos() {
+		return this.durationNanos;
+	}
+
+	/**
+	 * @return the time spent in the provided phase in nanoseconds. The phases do not add
+	 * up to the duration of the call: cache lookups and waiting for another thread that
+	 * generates the same model are not part of any phase.
+	 */
+	public long getPhaseNanos(Phase phase) {
+		return this.phaseNanos[phase.ordinal()];
+	}
+
+	/**
+	 * @return true if the duration reached the slow generation threshold
+	 */
+	public boolean isSlow() {
+		return this.slow;
+	}
+
+}
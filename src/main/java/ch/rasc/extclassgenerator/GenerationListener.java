@@ -0,0 +1,42 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+/**
+ * Listener that is notified after every call of {@code createModel},
+ * {@code generateJavascript} and {@code writeModel} (including the bundle variants) of
+ * a {@link ModelGeneratorEngine}. Nested calls are reported once, as part of the
+ * outermost call. Listeners are called synchronously by the calling thread and should
+ * return quickly. Exceptions thrown by a listener are logged and ignored. Calls that
+ * throw an exception are not reported.
+ *
+ * @see ModelGeneratorEngine#addGenerationListener(GenerationListener)
+ */
+@FunctionalInterface
+public interface GenerationListener {
+
+	void onGeneration(GenerationEvent event);
+
+	/**
+	 * Called after {@link #onGeneration(GenerationEvent)} if the call took at least as
+	 * long as the configured threshold, see
+	 * {@link ModelGeneratorEngine#setSlowGenerationThreshold(java.time.Duration)}.
+	 */
+	default void onSlowGeneration(GenerationEvent event) {
+		// nothing to do by default
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.util.List;
+
+/**
+ * Collects the phase timings of the current generator call. A trace is only started if
+ * generation listeners are registered. It is bound to the calling thread, so phases of
+ * nested calls (e.g. the introspection inside {@code writeModel}) are added to the trace
+ * of the outermost call.
+ */
+final class GenerationTrace {
+
+	private static final ThreadLocal<GenerationTrace> current = new ThreadLocal<>();
+
+	private final long start = System.nanoTime();
+
+	private final long[] phaseNanos = new long[GenerationEvent.Phase.values().length];
+
+	private int generations;
+
+	private boolean coalesced;
+
+	private boolean notModified;
+
+	private GenerationTrace() {
+	}
+
+	/**
+	 * Starts a trace for the current thread.
+	 *
+	 * @return the new trace or null if there are no listeners or the thread is already
+	 * traced by an outer call
+	 */
+	static GenerationTrace begin(List<GenerationListener> listeners) {
+		if (listeners.isEmpty() || current.get() != null) {
+			return null;
+		}
+		GenerationTrace trace = new GenerationTrace();
+		current.set(trace);
+		return trace;
+	}
+
+	/**
+	 * Unbinds the trace from the current thread. Does nothing if the trace is null.
+	 */
+	static void end(GenerationTrace trace) {
+		if (trace != null) {
+			current.remove();
+		}
+	}
+
+	/**
+	 * Adds the duration of a phase to the trace of the current thread, if there is one
+	 */
+	static void recordPhase(GenerationEvent.Phase phase, long nanos) {
+		GenerationTrace trace = current.get();
+		if (trace != null) {
+			trace.phaseNanos[phase.ordinal()] += nanos;
+			if (phase == GenerationEvent.Phase.INTROSPECTION
+					|| phase == GenerationEvent.Phase.RENDERING) {
+				trace.generations++;
+			}
+		}
+	}
+
+	/**
+	 * Marks the trace of the current thread, if there is one, as having waited for a
+	 * model that another thread generated
+	 */
+	static void recordCoalesced() {
+		GenerationTrace trace = current.get();
+		if (trace != null) {
+			trace.coalesced = true;
+		}
+	}
+
+	long elapsedNanos() {
+		return System.nanoTime() - this.start;
+	}
+
+	long[] getPhaseNanos() {
+		return this.phaseNanos.clone();
+	}
+
+	boolean isCacheHit() {
+		return this.generations == 0 && !this.coalesced;
+	}
+
+	boolean isCoalesced() {
+		return this.coalesced;
+	}
+
+	void setNotModified(boolean notModified) {
+		this.notModified = notModified;
+	}
+
+	boolean isNotModified() {
+		return this.notModified;
+	}
+
+}
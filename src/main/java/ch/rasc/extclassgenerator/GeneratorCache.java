@@ -0,0 +1,90 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Cache used by the {@link ModelGenerator} for introspected models and for generated
+ * Javascript code. Implementations are created by a {@link CacheProvider} and must be
+ * safe for concurrent use. Keys implement equals and hashCode and must otherwise be
+ * treated as opaque, the same applies to the values of the Javascript cache.
+ * <p>
+ * Implementations report every entry they remove, except entries replaced for the same
+ * key, to the {@link CacheSpec#getRemovalListener() removal listener}.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public interface GeneratorCache<K, V> {
+
+	/**
+	 * @return the cached value or null
+	 */
+	V get(K key);
+
+	/**
+	 * Returns the cached value or computes, caches and returns a new value. The
+	 * {@link ModelGenerator} already makes sure that a value is only computed by one
+	 * thread at a time, implementations don't need to block concurrent callers. It only
+	 * calls this method after {@link #get(Object)} missed, so the lookup of this method
+	 * must not be counted again in the {@link #stats() statistics}.
+	 * Implementations may decide not to keep the computed value.
+	 * <p>
+	 * The mapping function never accesses this cache, so implementations backed by a
+	 * {@link java.util.concurrent.ConcurrentHashMap} or similar maps that reject
+	 * recursive updates can call their own computeIfAbsent with it.
+	 */
+	V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction);
+
+	/**
+	 * Removes the entry of the provided key. Reported as
+	 * {@link RemovalCause#INVALIDATED}.
+	 */
+	void invalidate(K key);
+
+	/**
+	 * Removes all entries, pinned entries included, that match the provided filter.
+	 *
+	 * @param filter receives key and value of each entry
+	 * @param cause reported to the removal listener
+	 */
+	void invalidateAll(BiPredicate<? super K, ? super V> filter, RemovalCause cause);
+
+	/**
+	 * @return a snapshot of the statistics of this cache
+	 */
+	CacheStats stats();
+
+	/**
+	 * Changes the maximum weight set with {@link CacheSpec#getMaximumWeight()}. The
+	 * default implementation throws an {@link UnsupportedOperationException}.
+	 */
+	default void setMaximumWeight(long maximumWeight) {
+		throw new UnsupportedOperationException(
+				getClass().getName() + " does not support changing the maximum weight");
+	}
+
+	/**
+	 * Receives the entries removed from a cache
+	 */
+	@FunctionalInterface
+	interface RemovalListener<K, V> {
+		void onRemoval(K key, V value, RemovalCause cause);
+	}
+
+}
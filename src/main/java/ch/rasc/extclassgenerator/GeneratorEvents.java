@@ -0,0 +1,186 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder events of the generator. Like all custom events they are enabled in
+ * every recording, e.g. one started with {@code -XX:StartFlightRecording}, unless the
+ * settings of the recording say otherwise. To keep default recordings small the events
+ * that are emitted for every call or request ({@code CreateModel}, {@code Render},
+ * {@code Fingerprint} and {@code Serve}) are only recorded if they take at least 10 ms,
+ * and the {@code AnnotationScan} event, emitted for every scanned class, field and
+ * method, is disabled. A settings file or {@code Recording#enable} changes that. A
+ * disabled event costs a single field read.
+ */
+final class GeneratorEvents {
+
+	private static final String CATEGORY = "ExtClassGenerator";
+
+	private static final String PER_CALL_THRESHOLD = "10 ms";
+
+	private GeneratorEvents() {
+		// events only
+	}
+
+	@Name("ch.rasc.extclassgenerator.CreateModel")
+	@Label("Create Model")
+	@Description("Lookup of a model in the cache and introspection of the class on a miss")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	@Threshold(PER_CALL_THRESHOLD)
+	static final class CreateModel extends Event {
+		@Label("Class Name")
+		String className;
+
+		@Label("Include Validation")
+		String includeValidation;
+
+		@Label("Cache Hit")
+		boolean cacheHit;
+	}
+
+	@Name("ch.rasc.extclassgenerator.BeanInfo")
+	@Label("Bean Info")
+	@Description("Introspector.getBeanInfo call for a model class")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static final class BeanInfo extends Event {
+		@Label("Class Name")
+		String className;
+	}
+
+	@Name("ch.rasc.extclassgenerator.AnnotationScan")
+	@Label("Annotation Scan")
+	@Description("Search for repeatable model annotations on a class, field or method")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	@Enabled(false)
+	static final class AnnotationScan extends Event {
+		@Label("Element")
+		String element;
+
+		@Label("Annotation Type")
+		String annotationType;
+
+		@Label("Found")
+		int found;
+	}
+
+	@Name("ch.rasc.extclassgenerator.ValidationMapping")
+	@Label("Validation Mapping")
+	@Description("Assignment of model validations to the validated fields")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static final class ValidationMapping extends Event {
+		@Label("Model Name")
+		String modelName;
+
+		@Label("Validations")
+		int validations;
+	}
+
+	@Name("ch.rasc.extclassgenerator.Render")
+	@Label("Render")
+	@Description("Lookup of Javascript code in the cache and Jackson serialization on a miss")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	@Threshold(PER_CALL_THRESHOLD)
+	static final class Render extends Event {
+		@Label("Model Name")
+		String modelName;
+
+		@Label("Output Format")
+		String outputFormat;
+
+		@Label("Debug")
+		boolean debug;
+
+		@Label("Cache Hit")
+		boolean cacheHit;
+
+		@Label("Size")
+		@Description("Length of the Javascript code in characters")
+		long size;
+	}
+
+	@Name("ch.rasc.extclassgenerator.Encode")
+	@Label("Encode")
+	@Description("Encoding, compression and ETag (MD5) computation of Javascript code")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	static final class Encode extends Event {
+		@Label("Content Encoding")
+		String contentEncoding;
+
+		@Label("Input Size")
+		@DataAmount
+		long inputSize;
+
+		@Label("Output Size")
+		@DataAmount
+		long outputSize;
+	}
+
+	@Name("ch.rasc.extclassgenerator.Fingerprint")
+	@Label("Fingerprint")
+	@Description("ETag computation from the bytecode of a model class")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	@Threshold(PER_CALL_THRESHOLD)
+	static final class Fingerprint extends Event {
+		@Label("Class Name")
+		String className;
+
+		@Label("Output Format")
+		String outputFormat;
+	}
+
+	@Name("ch.rasc.extclassgenerator.Serve")
+	@Label("Serve")
+	@Description("HTTP response with the code of a model or a bundle of models")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	@Threshold(PER_CALL_THRESHOLD)
+	static final class Serve extends Event {
+		@Label("Class Name")
+		@Description("Model class or root class of a bundle, null for a model bean")
+		String className;
+
+		@Label("Output Format")
+		String outputFormat;
+
+		@Label("Content Encoding")
+		String contentEncoding;
+
+		@Label("Not Modified")
+		boolean notModified;
+
+		@Label("Size")
+		@DataAmount
+		long size;
+	}
+
+}
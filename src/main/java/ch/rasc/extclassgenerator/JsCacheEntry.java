@@ -0,0 +1,252 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.util.List;
+
+import org.springframework.util.DigestUtils;
+
+/**
+ * Generated JS code together with the response-ready representations (UTF-8 bytes,
+ * compressed bytes and ETags). Every representation is computed the first time it is
+ * needed and then reused for every following response.
+ */
+final class JsCacheEntry {
+
+	static final String CONTENT_TYPE = "application/javascript;charset=UTF-8";
+
+	private final String javascript;
+
+	private final List<ClassToken> members;
+
+	private volatile Variant identity;
+
+	private volatile Variant gzip;
+
+	private volatile Variant deflate;
+
+	JsCacheEntry(String javascript) {
+		this.javascript = javascript;
+		this.members = null;
+	}
+
+	private JsCacheEntry(byte[] data, String etag, List<ClassToken> members) {
+		this.javascript = null;
+		this.members = members;
+		this.identity = new Variant(data, etag, null);
+	}
+
+	/**
+	 * Creates an entry that contains the code of all provided entries. The bytes are
+	 * copied directly into one array. The ETag is derived from the ETags of the provided
+	 * entries.
+	 *
+	 * @param entries the entries to concatenate
+	 * @param separator bytes inserted between two entries
+	 * @param members the classes of the entries
+	 * @return a new entry without a JS String representation
+	 */
+	static JsCacheEntry concat(List<JsCacheEntry> entries, byte[] separator,
+			List<ClassToken> members) {
+		int length = 0;
+		StringBuilder etags = new StringBuilder(entries.size() * 36);
+		for (JsCacheEntry entry : entries) {
+			Variant variant = entry.getVariant(ContentEncoding.IDENTITY);
+			length += variant.getData().length;
+			etags.append(variant.getEtag());
+		}
+		length += separator.length * Math.max(0, entries.size() - 1);
+
+		byte[] data = new byte[length];
+		int pos = 0;
+		boolean first = true;
+		for (JsCacheEntry entry : entries) {
+			if (first) {
+				first = false;
+			}
+			else {
+				System.arraycopy(separator, 0, data, pos, separator.length);
+				pos += separator.length;
+			}
+			byte[] entryData = entry.getData();
+			System.arraycopy(entryData, 0, data, pos, entryData.length);
+			pos += entryData.length;
+		}
+
+		return new JsCacheEntry(data, "\"1" + DigestUtils.md5DigestAsHex(
+				etags.toString().getBytes(ModelGenerator.UTF8_CHARSET)) + "\"", members);
+	}
+
+	/**
+	 * @return the JS code or null if this entry was created with
+	 * {@link #concat(List, byte[], List)}
+	 */
+	String getJavascript() {
+		return this.javascript;
+	}
+
+	/**
+	 * @return the classes of a bundle, including the associated classes a bundle of
+	 * {@code writeModelWithAssociations} resolved. Null if this entry is not a bundle.
+	 */
+	List<ClassToken> getMembers() {
+		return this.members;
+	}
+
+	/**
+	 * @return true if this entry is a bundle and the classloader of one of its classes
+	 * has been unloaded
+	 */
+	boolean containsUnloadedClass() {
+		if (this.members != null) {
+			for (ClassToken token : this.members) {
+				if (token.isUnloaded()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	byte[] getData() {
+		return getVariant(ContentEncoding.IDENTITY).getData();
+	}
+
+	String getEtag() {
+		return getVariant(ContentEncoding.IDENTITY).getEtag();
+	}
+
+	/**
+	 * Estimates the memory used by this entry in bytes. Counts the JS String, the UTF-8
+	 * bytes and, because they are usually created for the first response, room for one
+	 * compressed representation.
+	 */
+	long weight() {
+		if (this.javascript == null) {
+			return 64 + this.identity.getData().length;
+		}
+		long length = this.javascript.length();
+		return 64 + length * 2 + length / 3;
+	}
+
+	/**
+	 * Returns the representation for the requested content coding. If compressing does
+	 * not make the content smaller the uncompressed representation is returned instead.
+	 */
+	Variant getVariant(ContentEncoding encoding) {
+		Variant variant = variantField(encoding);
+		if (variant == null) {
+			variant = createVariant(encoding);
+		}
+		return variant;
+	}
+
+	private Variant variantField(ContentEncoding encoding) {
+		switch (encoding) {
+		case GZIP:
+			return this.gzip;
+		case DEFLATE:
+			return this.deflate;
+		default:
+			return this.identity;
+		}
+	}
+
+	private synchronized Variant createVariant(ContentEncoding encoding) {
+		Variant variant = variantField(encoding);
+		if (variant != null) {
+			return variant;
+		}
+
+		if (encoding == ContentEncoding.IDENTITY) {
+			long start = System.nanoTime();
+			GeneratorEvents.Encode event = new GeneratorEvents.Encode();
+			event.begin();
+			byte[] data = this.javascript.getBytes(ModelGenerator.UTF8_CHARSET);
+			variant = new Variant(data,
+					"\"0" + DigestUtils.md5DigestAsHex(data) + "\"", null);
+			this.identity = variant;
+			encoded(event, start, encoding, this.javascript.length(), data.length);
+			return variant;
+		}
+
+		Variant plain = getVariant(ContentEncoding.IDENTITY);
+		long start = System.nanoTime();
+		GeneratorEvents.Encode event = new GeneratorEvents.Encode();
+		event.begin();
+		byte[] compressed = encoding.encode(plain.getData());
+		encoded(event, start, encoding, plain.getData().length, compressed.length);
+		if (compressed.length < plain.getData().length) {
+			String etag = plain.getEtag();
+			variant = new Variant(compressed, etag.substring(0, etag.length() - 1) + "-"
+					+ encoding.getHeaderValue() + "\"", encoding.getHeaderValue());
+		}
+		else {
+			variant = plain;
+		}
+
+		if (encoding == ContentEncoding.GZIP) {
+			this.gzip = variant;
+		}
+		else {
+			this.deflate = variant;
+		}
+		return variant;
+	}
+
+	private static void encoded(GeneratorEvents.Encode event, long start,
+			ContentEncoding encoding, long inputSize, long outputSize) {
+		event.end();
+		GenerationTrace.recordPhase(GenerationEvent.Phase.ENCODING,
+				System.nanoTime() - start);
+		if (event.shouldCommit()) {
+			event.contentEncoding = encoding.name();
+			event.inputSize = inputSize;
+			event.outputSize = outputSize;
+			event.commit();
+		}
+	}
+
+	static final class Variant {
+		private final byte[] data;
+
+		private final String etag;
+
+		private final String contentEncoding;
+
+		Variant(byte[] data, String etag, String contentEncoding) {
+			this.data = data;
+			this.etag = etag;
+			this.contentEncoding = contentEncoding;
+		}
+
+		byte[] getData() {
+			return this.data;
+		}
+
+		String getEtag() {
+			return this.etag;
+		}
+
+		/**
+		 * @return value of the Content-Encoding header or null if not compressed
+		 */
+		String getContentEncoding() {
+			return this.contentEncoding;
+		}
+	}
+
+}
@@ -17,19 +17,58 @@ package ch.rasc.extclassgenerator;
 
 import java.util.Objects;
 
+/**
+ * Key of a generated model in the JS cache. A model provided by the caller is identified
+ * by its name and by the {@link StructuralHash} of its content, so a model that is
+ * changed after its code has been generated gets a new key. A model the generator
+ * introspected itself is identified by the {@link ClassToken} of its class, no hash
+ * needs to be computed.
+ */
 final class JsCacheKey {
+	private final ClassToken classToken;
+
 	private final String modelName;
 
+	private final long structuralHash;
+
 	private final OutputConfig config;
 
 	JsCacheKey(ModelBean modelBean, OutputConfig config) {
+		this.classToken = null;
 		this.modelName = modelBean.getName();
-		this.config = config;
+		this.structuralHash = StructuralHash.of(modelBean);
+		this.config = OutputConfig.canonical(config);
+	}
+
+	JsCacheKey(ClassToken classToken, String modelName, OutputConfig config) {
+		this.classToken = classToken;
+		this.modelName = modelName;
+		this.structuralHash = 0;
+		this.config = OutputConfig.canonical(config);
+	}
+
+	/**
+	 * @return the token of the introspected class or null if the model was provided by
+	 * the caller
+	 */
+	ClassToken getClassToken() {
+		return this.classToken;
+	}
+
+	String getModelName() {
+		return this.modelName;
+	}
+
+	OutputConfig getConfig() {
+		return this.config;
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.config, this.modelName);
+		int result = 31 * Long.hashCode(this.structuralHash)
+				+ Objects.hashCode(this.classToken);
+		result = 31 * result + Objects.hashCode(this.config);
+		return 31 * result + Objects.hashCode(this.modelName);
 	}
 
 	@Override
@@ -41,11 +80,13 @@ final class JsCacheKey {
 			return false;
 		}
 		JsCacheKey other = (JsCacheKey) obj;
-		if (!Objects.equals(this.config, other.config)
+		if (this.classToken != other.classToken
+				|| this.structuralHash != other.structuralHash
+				|| !Objects.equals(this.config, other.config)
 				|| !Objects.equals(this.modelName, other.modelName)) {
 			return false;
 		}
 		return true;
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of durations with fixed millisecond buckets. Recording only
+ * increments counters, so it can be called on every generation.
+ */
+final class LatencyHistogram {
+
+	/**
+	 * Inclusive upper bounds of the buckets in milliseconds. The last bucket counts all
+	 * durations above the largest bound.
+	 */
+	static final long[] BUCKET_BOUNDS_MILLIS = { 1, 2, 5, 10, 25, 50, 100, 250, 500,
+			1000, 2500 };
+
+	private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MILLIS.length + 1];
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder totalNanos = new LongAdder();
+
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	LatencyHistogram() {
+		for (int i = 0; i < this.buckets.length; i++) {
+			this.buckets[i] = new LongAdder();
+		}
+	}
+
+	void record(long nanos) {
+		long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+		int bucket = 0;
+		while (bucket < BUCKET_BOUNDS_MILLIS.length
+				&& millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+			bucket++;
+		}
+		this.buckets[bucket].increment();
+		this.count.increment();
+		this.totalNanos.add(nanos);
+		this.maxNanos.accumulate(nanos);
+	}
+
+	long getCount() {
+		return this.count.sum();
+	}
+
+	long getTotalNanos() {
+		return this.totalNanos.sum();
+	}
+
+	long getMaxNanos() {
+		return this.maxNanos.get();
+	}
+
+	/**
+	 * @return the number of recorded durations per bucket, see
+	 * {@link #BUCKET_BOUNDS_MILLIS}
+	 */
+	long[] getBucketCounts() {
+		long[] counts = new long[this.buckets.length];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = this.buckets[i].sum();
+		}
+		return counts;
+	}
+
+	void reset() {
+		for (LongAdder bucket : this.buckets) {
+			bucket.reset();
+		}
+		this.count.reset();
+		this.totalNanos.reset();
+		this.maxNanos.reset();
+	}
+
+}
@@ -19,9 +19,12 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.RoundEnvironment;
@@ -35,12 +38,8 @@ import javax.tools.StandardLocation;
 
 import org.springframework.util.StringUtils;
 
-import tools.jackson.core.json.JsonWriteFeature;
-import tools.jackson.databind.ObjectMapper;
-import tools.jackson.databind.json.JsonMapper;
-
 @SupportedAnnotationTypes({ "ch.rasc.extclassgenerator.Model" })
-@SupportedOptions({ "outputFormat", "debug", "includeValidation" })
+@SupportedOptions({ "outputFormat", "debug", "includeValidation", "modelIndex" })
 public class ModelAnnotationProcessor extends AbstractProcessor {
 
 	private static final boolean ALLOW_OTHER_PROCESSORS_TO_CLAIM_ANNOTATIONS = false;
@@ -59,13 +58,24 @@ public class ModelAnnotationProcessor extends AbstractProcessor {
 
 	private static final String OPTION_LINEENDING = "lineEnding";
 
+	private static final String OPTION_MODELINDEX = "modelIndex";
+
+	private final ObjectWriters objectWriters = new ObjectWriters();
+
+	private final Set<String> indexedModels = new TreeSet<>();
+
 	@Override
 	public boolean process(Set<? extends TypeElement> annotations,
 			RoundEnvironment roundEnv) {
 		this.processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
 				"Running " + getClass().getSimpleName());
 
-		if (roundEnv.processingOver() || annotations.size() == 0) {
+		if (roundEnv.processingOver()) {
+			writeModelIndex();
+			return ALLOW_OTHER_PROCESSORS_TO_CLAIM_ANNOTATIONS;
+		}
+
+		if (annotations.size() == 0) {
 			return ALLOW_OTHER_PROCESSORS_TO_CLAIM_ANNOTATIONS;
 		}
 
@@ -133,6 +143,9 @@ public class ModelAnnotationProcessor extends AbstractProcessor {
 				try {
 					TypeElement typeElement = (TypeElement) element;
 
+					this.indexedModels.add(this.processingEnv.getElementUtils()
+							.getBinaryName(typeElement).toString());
+
 					String qualifiedName = typeElement.getQualifiedName().toString();
 					Class<?> modelClass = Class.forName(qualifiedName);
 
@@ -211,7 +224,62 @@ public class ModelAnnotationProcessor extends AbstractProcessor {
 		return ALLOW_OTHER_PROCESSORS_TO_CLAIM_ANNOTATIONS;
 	}
 
-	private static String generateSubclassCode(Class<?> clazz,
+	/**
+	 * Writes the binary names of all processed {@link Model} classes to
+	 * {@link ModelIndex#LOCATION}, one name per line. Disabled with the option
+	 * modelIndex=false.
+	 * <p>
+	 * An incremental build only processes the recompiled classes, so the entries of an
+	 * existing index are kept as long as their types still exist and are annotated with
+	 * {@link Model}.
+	 */
+	private void writeModelIndex() {
+		if (this.indexedModels.isEmpty() || "false"
+				.equals(this.processingEnv.getOptions().get(OPTION_MODELINDEX))) {
+			return;
+		}
+
+		mergeExistingModelIndex();
+
+		try {
+			FileObject fo = this.processingEnv.getFiler()
+					.createResource(StandardLocation.CLASS_OUTPUT, "", ModelIndex.LOCATION);
+			try (Writer writer = new OutputStreamWriter(fo.openOutputStream(),
+					ModelGenerator.UTF8_CHARSET)) {
+				for (String className : this.indexedModels) {
+					writer.write(className);
+					writer.write('\n');
+				}
+			}
+		}
+		catch (IOException e) {
+			this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					e.getMessage());
+		}
+	}
+
+	private void mergeExistingModelIndex() {
+		try {
+			FileObject fo = this.processingEnv.getFiler()
+					.getResource(StandardLocation.CLASS_OUTPUT, "", ModelIndex.LOCATION);
+			for (String line : fo.getCharContent(true).toString().split("\n")) {
+				String className = line.trim();
+				if (className.isEmpty() || className.startsWith("#")) {
+					continue;
+				}
+				TypeElement typeElement = this.processingEnv.getElementUtils()
+						.getTypeElement(className.replace('$', '.'));
+				if (typeElement != null && typeElement.getAnnotation(Model.class) != null) {
+					this.indexedModels.add(className);
+				}
+			}
+		}
+		catch (IOException | IllegalArgumentException e) {
+			// no index from a previous build
+		}
+	}
+
+	private String generateSubclassCode(Class<?> clazz,
 			OutputConfig outputConfig) {
 		Model modelAnnotation = clazz.getAnnotation(Model.class);
 
@@ -226,49 +294,21 @@ public class ModelAnnotationProcessor extends AbstractProcessor {
 		Map<String, Object> modelObject = new LinkedHashMap<>();
 		modelObject.put("extend", name + "Base");
 
+		String quote = outputConfig.isUseSingleQuotes() ? "'" : "\"";
 		StringBuilder sb = new StringBuilder(100);
-		sb.append("Ext.define(\"").append(name).append("\",");
+		sb.append("Ext.define(").append(quote).append(name).append(quote).append(",");
 		if (outputConfig.isDebug()) {
-			sb.append("\n");
-		}
-
-		String configObjectString;
-
-		JsonMapper.Builder mapperBuilder = JsonMapper.builder()
-				.configure(JsonWriteFeature.QUOTE_PROPERTY_NAMES, false);
-
-		if (!outputConfig.isSurroundApiWithQuotes()) {
-			if (outputConfig.getOutputFormat() == OutputFormat.EXTJS5) {
-				mapperBuilder.addMixIn(ProxyObject.class,
-						ProxyObjectWithoutApiQuotesExtJs5Mixin.class);
-			}
-			else {
-				mapperBuilder.addMixIn(ProxyObject.class,
-						ProxyObjectWithoutApiQuotesMixin.class);
-			}
-			mapperBuilder.addMixIn(ApiObject.class, ApiObjectMixin.class);
-		}
-		else if (outputConfig.getOutputFormat() != OutputFormat.EXTJS5) {
-			mapperBuilder.addMixIn(ProxyObject.class,
-					ProxyObjectWithApiQuotesMixin.class);
+			String lineSeparator = ObjectWriters
+					.lineSeparator(outputConfig.getLineEnding());
+			sb.append(lineSeparator != null ? lineSeparator : "\n");
 		}
 
-		ObjectMapper mapper = mapperBuilder.build();
-		if (outputConfig.isDebug()) {
-			configObjectString = mapper.writerWithDefaultPrettyPrinter()
-					.writeValueAsString(modelObject);
-		}
-		else {
-			configObjectString = mapper.writeValueAsString(modelObject);
-		}
+		String configObjectString = this.objectWriters.get(outputConfig)
+				.writeValueAsString(modelObject);
 
 		sb.append(configObjectString);
 		sb.append(");");
 
-		if (outputConfig.isUseSingleQuotes()) {
-			return sb.toString().replace('"', '\'');
-		}
-
 		return sb.toString();
 
 	}
@@ -17,19 +17,60 @@ package ch.rasc.extclassgenerator;
 
 import java.util.Objects;
 
+/**
+ * Key of the model cache. Only contains the options that change the result of the
+ * introspection, all the other options of {@link OutputConfig} only affect the rendering
+ * and share the same model. The class is identified by its {@link ClassToken}, so classes
+ * with the same name from different classloaders get different keys.
+ */
 final class ModelCacheKey {
-	private final String className;
+	private final ClassToken classToken;
+
+	private final IncludeValidation includeValidation;
+
+	/**
+	 * {@link IncludeValidation#BUILTIN} adds range validations only to
+	 * {@link OutputFormat#EXTJS5} models.
+	 */
+	private final boolean builtinRangeValidations;
+
+	ModelCacheKey(Class<?> clazz, OutputConfig outputConfig) {
+		this(outputConfig, clazz != null ? ClassToken.of(clazz) : null);
+	}
+
+	private ModelCacheKey(OutputConfig outputConfig, ClassToken classToken) {
+		this.classToken = classToken;
+		if (outputConfig != null) {
+			this.includeValidation = outputConfig.getIncludeValidation();
+			this.builtinRangeValidations = this.includeValidation == IncludeValidation.BUILTIN
+					&& outputConfig.getOutputFormat() == OutputFormat.EXTJS5;
+		}
+		else {
+			this.includeValidation = null;
+			this.builtinRangeValidations = false;
+		}
+	}
 
-	private final OutputConfig outputConfig;
+	/**
+	 * Use {@link ClassToken#modelCacheKey(OutputConfig)}, which returns the cached key
+	 */
+	static ModelCacheKey of(ClassToken classToken, OutputConfig outputConfig) {
+		return new ModelCacheKey(outputConfig, classToken);
+	}
+
+	String getClassName() {
+		return this.classToken != null ? this.classToken.getClassName() : null;
+	}
 
-	public ModelCacheKey(String className, OutputConfig outputConfig) {
-		this.className = className;
-		this.outputConfig = outputConfig;
+	ClassToken getClassToken() {
+		return this.classToken;
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.className, this.outputConfig);
+		int result = 31 * Objects.hashCode(this.classToken)
+				+ Objects.hashCode(this.includeValidation);
+		return 31 * result + Boolean.hashCode(this.builtinRangeValidations);
 	}
 
 	@Override
@@ -41,11 +82,12 @@ final class ModelCacheKey {
 			return false;
 		}
 		ModelCacheKey other = (ModelCacheKey) obj;
-		if (!Objects.equals(this.className, other.className)
-				|| !Objects.equals(this.outputConfig, other.outputConfig)) {
+		if (this.classToken != other.classToken
+				|| this.includeValidation != other.includeValidation
+				|| this.builtinRangeValidations != other.builtinRangeValidations) {
 			return false;
 		}
 		return true;
 	}
 
-}
\ No newline at end of file
+}
@@ -146,6 +146,29 @@ public class ModelFieldBean {
 		}
 	}
 
+	/**
+	 * Creates a copy of the provided field
+	 */
+	ModelFieldBean(ModelFieldBean source) {
+		this.name = source.name;
+		this.modelType = source.modelType;
+		this.type = source.type;
+		this.defaultValue = source.defaultValue;
+		this.dateFormat = source.dateFormat;
+		this.useNull = source.useNull;
+		this.allowNull = source.allowNull;
+		this.mapping = source.mapping;
+		this.persist = source.persist;
+		this.critical = source.critical;
+		this.convert = source.convert;
+		this.calculate = source.calculate;
+		this.validators = source.validators;
+		this.depends = source.depends;
+		this.reference = source.reference;
+		this.allowBlank = source.allowBlank;
+		this.unique = source.unique;
+	}
+
 	public String getName() {
 		return this.name;
 	}
@@ -439,15 +462,36 @@ public class ModelFieldBean {
 		this.unique = unique;
 	}
 
-	void updateTypes(OutputConfig outputConfig) {
+	/**
+	 * Returns this field or, if the type has a different name in the requested output
+	 * format, a copy with the changed type. Does not modify this field.
+	 */
+	ModelFieldBean withUpdatedTypes(OutputConfig outputConfig) {
 		if (outputConfig.getOutputFormat() == OutputFormat.EXTJS5) {
 			if ("int".equals(this.type)) {
-				this.type = "integer";
+				return withType("integer");
 			}
 			else if ("float".equals(this.type)) {
-				this.type = "number";
+				return withType("number");
 			}
 		}
+		return this;
+	}
+
+	/**
+	 * Returns a copy of this field with the provided validators. Does not modify this
+	 * field.
+	 */
+	ModelFieldBean withValidators(List<AbstractValidation> newValidators) {
+		ModelFieldBean copy = new ModelFieldBean(this);
+		copy.validators = newValidators;
+		return copy;
+	}
+
+	private ModelFieldBean withType(String newType) {
+		ModelFieldBean copy = new ModelFieldBean(this);
+		copy.type = newType;
+		return copy;
 	}
 
 }
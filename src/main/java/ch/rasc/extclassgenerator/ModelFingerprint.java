@@ -0,0 +1,155 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.springframework.util.DigestUtils;
+
+import tools.jackson.databind.cfg.PackageVersion;
+
+/**
+ * Computes ETags for models of a class without introspecting the class or generating
+ * code. The ETag is derived from the bytecode of the class, its superclasses and
+ * interfaces and of the classes it is associated with, from the {@link OutputConfig} and
+ * from the version of this library and Jackson. The bytecode hash of a class is computed
+ * once and then cached. Changes made at runtime to the cached {@link ModelBean} of a
+ * class do not change its ETag.
+ */
+final class ModelFingerprint {
+
+	private static final String LIBRARY_VERSION = libraryVersion();
+
+	private static final ClassValue<String> classHashes = new ClassValue<>() {
+		@Override
+		protected String computeValue(Class<?> type) {
+			return hashClass(type);
+		}
+	};
+
+	private ModelFingerprint() {
+		// utility class
+	}
+
+	/**
+	 * Returns the ETag for the code generated from the provided class with the provided
+	 * config or null if the bytecode of the class is not available.
+	 */
+	static String etag(Class<?> clazz, OutputConfig outputConfig) {
+		return etag(clazz, outputConfig, System.lineSeparator());
+	}
+
+	/**
+	 * @param systemLineSeparator the line separator of the JVM. Only part of the ETag if
+	 * it is written into the code: for debug configs without a line ending or with
+	 * {@link LineEnding#SYSTEM}. So nodes on different operating systems compute the same
+	 * ETags for the same code.
+	 */
+	static String etag(Class<?> clazz, OutputConfig outputConfig,
+			String systemLineSeparator) {
+		String classHash = classHashes.get(clazz);
+		if (classHash == null) {
+			return null;
+		}
+
+		StringBuilder sb = new StringBuilder(128);
+		sb.append(LIBRARY_VERSION).append('|').append(classHash).append('|')
+				.append(outputConfig.getOutputFormat()).append('|')
+				.append(outputConfig.getIncludeValidation()).append('|')
+				.append(outputConfig.isDebug()).append('|')
+				.append(outputConfig.isUseSingleQuotes()).append('|')
+				.append(outputConfig.isSurroundApiWithQuotes()).append('|')
+				.append(outputConfig.getLineEnding());
+		if (outputConfig.isDebug() && (outputConfig.getLineEnding() == null
+				|| outputConfig.getLineEnding() == LineEnding.SYSTEM)) {
+			sb.append('|').append(systemLineSeparator);
+		}
+
+		return "\"2" + DigestUtils
+				.md5DigestAsHex(sb.toString().getBytes(ModelGenerator.UTF8_CHARSET))
+				+ "\"";
+	}
+
+	/**
+	 * Returns the ETag of the representation with the provided content coding.
+	 */
+	static String etag(String etag, ContentEncoding encoding) {
+		if (encoding == ContentEncoding.IDENTITY) {
+			return etag;
+		}
+		return etag.substring(0, etag.length() - 1) + "-" + encoding.getHeaderValue()
+				+ "\"";
+	}
+
+	private static String hashClass(Class<?> clazz) {
+		Set<Class<?>> classes = new LinkedHashSet<>();
+		addHierarchy(classes, clazz);
+		for (Class<?> associatedClass : ModelGenerator.getAssociatedClasses(clazz)) {
+			addHierarchy(classes, associatedClass);
+		}
+
+		StringBuilder sb = new StringBuilder(classes.size() * 80);
+		for (Class<?> c : classes) {
+			String bytecodeHash = hashBytecode(c);
+			if (bytecodeHash == null) {
+				return null;
+			}
+			sb.append(c.getName()).append('=').append(bytecodeHash).append(';');
+		}
+		return DigestUtils
+				.md5DigestAsHex(sb.toString().getBytes(ModelGenerator.UTF8_CHARSET));
+	}
+
+	private static void addHierarchy(Set<Class<?>> classes, Class<?> clazz) {
+		// classes of the JDK do not change the generated code
+		if (clazz == null || clazz.getClassLoader() == null || !classes.add(clazz)) {
+			return;
+		}
+		addHierarchy(classes, clazz.getSuperclass());
+		for (Class<?> interfaceClass : clazz.getInterfaces()) {
+			addHierarchy(classes, interfaceClass);
+		}
+	}
+
+	private static String hashBytecode(Class<?> clazz) {
+		String resourceName = clazz.getName().replace('.', '/') + ".class";
+		try (InputStream is = clazz.getClassLoader().getResourceAsStream(resourceName)) {
+			if (is == null) {
+				return null;
+			}
+			return DigestUtils.md5DigestAsHex(is);
+		}
+		catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Version of this library and of Jackson. If the jar does not contain an
+	 * Implementation-Version the bytecode hash of the generator is used instead.
+	 */
+	private static String libraryVersion() {
+		String version = ModelGenerator.class.getPackage().getImplementationVersion();
+		if (version == null) {
+			version = hashBytecode(ModelGenerator.class);
+		}
+		return version + "/" + PackageVersion.VERSION;
+	}
+
+}
@@ -20,25 +20,31 @@ import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
-import java.lang.ref.SoftReference;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.nio.charset.Charset;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.ObjectName;
 
 import org.springframework.beans.BeanUtils;
 import org.springframework.core.annotation.MergedAnnotation;
@@ -47,8 +53,6 @@ import org.springframework.core.annotation.MergedAnnotationPredicates;
 import org.springframework.core.annotation.MergedAnnotations;
 import org.springframework.core.annotation.MergedAnnotations.SearchStrategy;
 import org.springframework.core.annotation.RepeatableContainers;
-import org.springframework.util.Assert;
-import org.springframework.util.DigestUtils;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 
@@ -56,13 +60,11 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import ch.rasc.extclassgenerator.association.AbstractAssociation;
 import ch.rasc.extclassgenerator.validation.AbstractValidation;
-import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import tools.jackson.core.json.JsonWriteFeature;
-import tools.jackson.databind.MapperFeature;
-import tools.jackson.databind.ObjectMapper;
-import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.exc.JacksonIOException;
+import tools.jackson.databind.ObjectWriter;
 
 /**
  * Generator for creating ExtJS and Touch Model objects (JS code) based on a provided
@@ -72,9 +74,40 @@ public abstract class ModelGenerator {
 
 	public static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
 
-	private static final Map<JsCacheKey, SoftReference<String>> jsCache = new ConcurrentHashMap<>();
+	private static final ModelGeneratorEngine defaultEngine = new ModelGeneratorEngine();
+
+	/**
+	 * Returns the engine the static methods of this class delegate to. Applications that
+	 * need caches, cache settings or listeners that are isolated from the rest of the
+	 * application create their own {@link ModelGeneratorEngine} instead.
+	 *
+	 * @return the shared default engine
+	 */
+	public static ModelGeneratorEngine getDefaultEngine() {
+		return defaultEngine;
+	}
 
-	private static final Map<ModelCacheKey, SoftReference<ModelBean>> modelCache = new ConcurrentHashMap<>();
+	/**
+	 * Registers the statistics of the default engine as a platform MBean with the object
+	 * name {@code ch.rasc.extclassgenerator:type=ModelGenerator,name=default}, so JMX
+	 * clients can read the cache statistics and the introspection and render latencies.
+	 *
+	 * @return the object name the MBean is registered with
+	 * @throws IllegalStateException if the default engine is already registered
+	 *
+	 * @see ModelGeneratorEngine#registerMBean(String)
+	 */
+	public static ObjectName registerMBean() {
+		return defaultEngine.registerMBean("default");
+	}
+
+	/**
+	 * Removes the MBean registered with {@link #registerMBean()}. Does nothing if the
+	 * default engine is not registered.
+	 */
+	public static void unregisterMBean() {
+		defaultEngine.unregisterMBean();
+	}
 
 	/**
 	 * Instrospects the provided class, creates a model object (JS code) and writes it
@@ -135,15 +168,33 @@ public abstract class ModelGenerator {
 		outputConfig.setIncludeValidation(includeValidation);
 		outputConfig.setOutputFormat(format);
 		outputConfig.setDebug(debug);
-		ModelBean model = createModel(clazz, outputConfig);
-		writeModel(request, response, model, outputConfig);
+		writeModel(request, response, clazz, outputConfig);
 	}
 
+	/**
+	 * Instrospects the provided class, creates a model object (JS code) and writes it
+	 * into the response.
+	 * <p>
+	 * The ETag of the response is derived from the bytecode of the class (and its
+	 * superclasses and associated classes), the output config and the library version. A
+	 * conditional request whose If-None-Match header matches this ETag is answered with
+	 * 304 Not Modified without introspecting the class or generating any code. Changes
+	 * made to the cached model returned by {@link #createModel(Class, OutputConfig)} are
+	 * not part of the ETag, clients holding the old code keep receiving 304 responses.
+	 * Serve a modified model with
+	 * {@link #writeModel(HttpServletRequest, HttpServletResponse, ModelBean, OutputConfig)},
+	 * whose ETag is derived from the generated code.
+	 *
+	 * @param request the http servlet request
+	 * @param response the http servlet response
+	 * @param clazz class that the generator should introspect
+	 * @param outputConfig configuration for the generator
+	 * @throws IOException
+	 */
 	public static void writeModel(HttpServletRequest request,
 			HttpServletResponse response, Class<?> clazz, OutputConfig outputConfig)
 			throws IOException {
-		ModelBean model = createModel(clazz, outputConfig);
-		writeModel(request, response, model, outputConfig);
+		defaultEngine.writeModel(request, response, clazz, outputConfig);
 	}
 
 	/**
@@ -205,7 +256,9 @@ public abstract class ModelGenerator {
 	 * {@link #generateJavascript(ModelBean, OutputFormat, boolean)} or
 	 * {@link #writeModel(HttpServletRequest, HttpServletResponse, ModelBean, OutputFormat)}
 	 * to create the JS code. Models are being cached. A second call with the same
-	 * parameters will return the model from the cache.
+	 * parameters will return the model from the cache. The methods that take a class
+	 * cache the code by class, so changes made to the returned model are only picked up
+	 * by the methods that take a {@link ModelBean}.
 	 *
 	 * @param clazz the model will be created based on this class.
 	 * @param includeValidation specifies what validation configuration should be added
@@ -236,13 +289,11 @@ public abstract class ModelGenerator {
 		outputConfig.setOutputFormat(format);
 		outputConfig.setDebug(debug);
 
-		ModelBean model = createModel(clazz, outputConfig);
-		return generateJavascript(model, outputConfig);
+		return defaultEngine.generateJavascript(clazz, outputConfig);
 	}
 
 	public static String generateJavascript(Class<?> clazz, OutputConfig outputConfig) {
-		ModelBean model = createModel(clazz, outputConfig);
-		return generateJavascript(model, outputConfig);
+		return defaultEngine.generateJavascript(clazz, outputConfig);
 	}
 
 	/**
@@ -263,8 +314,7 @@ public abstract class ModelGenerator {
 		outputConfig.setOutputFormat(format);
 		outputConfig.setDebug(debug);
 
-		ModelBean model = createModel(clazz, outputConfig);
-		return generateJavascript(model, outputConfig);
+		return defaultEngine.generateJavascript(clazz, outputConfig);
 	}
 
 	/**
@@ -287,54 +337,195 @@ public abstract class ModelGenerator {
 		return generateJavascript(model, outputConfig);
 	}
 
+	/**
+	 * Creates a model object (JS code) based on the provided {@link ModelBean} and writes
+	 * it into the response. The encoded bytes, the gzip and deflate compressed variants
+	 * and their ETags are cached together with the JS code (unless debug is true), so a
+	 * repeated request only needs a cache lookup and either a 304 response or a single
+	 * write. The variant is selected with the Accept-Encoding header of the request.
+	 *
+	 * @param request the http servlet request
+	 * @param response the http servlet response
+	 * @param model {@link ModelBean} describing the model to be generated
+	 * @param outputConfig the output configuration
+	 * @throws IOException
+	 */
 	public static void writeModel(HttpServletRequest request,
 			HttpServletResponse response, ModelBean model, OutputConfig outputConfig)
 			throws IOException {
+		defaultEngine.writeModel(request, response, model, outputConfig);
+	}
+
+	/**
+	 * Instrospects all provided classes and writes the model objects (JS code) of all of
+	 * them in one response. The models are written in the iteration order of the
+	 * collection, duplicates are written only once. The assembled bundle and its ETag,
+	 * which is derived from the ETags of the individual models, are cached (unless debug
+	 * is true). The response supports the same conditional and compressed handling as
+	 * {@link #writeModel(HttpServletRequest, HttpServletResponse, ModelBean, OutputConfig)}.
+	 *
+	 * @param request the http servlet request
+	 * @param response the http servlet response
+	 * @param classes classes that the generator should introspect
+	 * @param outputConfig the output configuration
+	 * @throws IOException
+	 */
+	public static void writeModels(HttpServletRequest request,
+			HttpServletResponse response, Collection<Class<?>> classes,
+			OutputConfig outputConfig) throws IOException {
+		defaultEngine.writeModels(request, response, classes, outputConfig);
+	}
 
-		byte[] data = generateJavascript(model, outputConfig).getBytes(UTF8_CHARSET);
-		String ifNoneMatch = request.getHeader("If-None-Match");
-		String etag = "\"0" + DigestUtils.md5DigestAsHex(data) + "\"";
+	/**
+	 * Instrospects the provided class and all the classes it is associated with
+	 * ({@link ModelAssociation}), directly or transitively, and writes the model objects
+	 * (JS code) of all of them in one response. Every model is written after the models
+	 * it is associated with, the root class is written last. Cyclic associations are
+	 * supported. The bundle is cached like the bundles of
+	 * {@link #writeModels(HttpServletRequest, HttpServletResponse, Collection, OutputConfig)}.
+	 *
+	 * @param request the http servlet request
+	 * @param response the http servlet response
+	 * @param rootClass class the generator starts the association walk with
+	 * @param outputConfig the output configuration
+	 * @throws IOException
+	 */
+	public static void writeModelWithAssociations(HttpServletRequest request,
+			HttpServletResponse response, Class<?> rootClass, OutputConfig outputConfig)
+			throws IOException {
+		defaultEngine.writeModelWithAssociations(request, response, rootClass,
+				outputConfig);
+	}
 
-		response.setHeader("ETag", etag);
+	/**
+	 * Walks the {@link ModelAssociation} graph starting with the provided class and
+	 * returns every reachable class in dependency order: associated classes before the
+	 * classes that reference them.
+	 */
+	static List<Class<?>> collectAssociatedClasses(Class<?> rootClass) {
+		Set<Class<?>> visited = new HashSet<>();
+		List<Class<?>> ordered = new ArrayList<>();
+		collectAssociatedClasses(rootClass, visited, ordered);
+		return ordered;
+	}
 
-		if (etag.equals(ifNoneMatch)) {
-			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+	private static void collectAssociatedClasses(Class<?> clazz, Set<Class<?>> visited,
+			List<Class<?>> ordered) {
+		if (!visited.add(clazz)) {
 			return;
 		}
 
-		response.setContentType("application/javascript");
-		response.setCharacterEncoding(UTF8_CHARSET.name());
-		response.setContentLength(data.length);
+		for (Class<?> associatedClass : getAssociatedClasses(clazz)) {
+			collectAssociatedClasses(associatedClass, visited, ordered);
+		}
 
-		@SuppressWarnings("resource")
-		ServletOutputStream out = response.getOutputStream();
-		out.write(data);
-		out.flush();
+		ordered.add(clazz);
 	}
 
-	public static ModelBean createModel(final Class<?> clazz,
-			final OutputConfig outputConfig) {
+	static Set<Class<?>> getAssociatedClasses(Class<?> clazz) {
+		final Set<Class<?>> associatedClasses = new LinkedHashSet<>();
+
+		if (!clazz.isInterface()) {
+			for (ModelAssociation modelAssociation : getRepeatableAnnotations(clazz,
+					ModelAssociation.class)) {
+				if (StringUtils.hasText(modelAssociation.propertyName())) {
+					addAssociatedClass(associatedClasses, modelAssociation.model());
+				}
+			}
 
-		Assert.notNull(clazz, "clazz must not be null");
-		Assert.notNull(outputConfig.getIncludeValidation(),
-				"includeValidation must not be null");
+			ReflectionUtils.doWithFields(clazz, field -> {
+				ModelAssociation modelAssociation = field
+						.getAnnotation(ModelAssociation.class);
+				if (modelAssociation != null) {
+					addAssociatedClass(associatedClasses,
+							modelAssociation.model() != Object.class
+									? modelAssociation.model()
+									: field.getType());
+				}
+			});
+		}
 
-		ModelCacheKey key = new ModelCacheKey(clazz.getName(), outputConfig);
-		SoftReference<ModelBean> modelReference = modelCache.get(key);
-		if (modelReference != null && modelReference.get() != null) {
-			return modelReference.get();
+		ReflectionUtils.doWithMethods(clazz, method -> {
+			ModelAssociation modelAssociation = method
+					.getAnnotation(ModelAssociation.class);
+			if (modelAssociation != null) {
+				addAssociatedClass(associatedClasses,
+						modelAssociation.model() != Object.class
+								? modelAssociation.model()
+								: method.getReturnType());
+			}
+		});
+
+		return associatedClasses;
+	}
+
+	private static void addAssociatedClass(Set<Class<?>> associatedClasses,
+			Class<?> associatedClass) {
+		if (associatedClass != Object.class && !associatedClass.isPrimitive()
+				&& !associatedClass.isArray()
+				&& !Collection.class.isAssignableFrom(associatedClass)
+				&& !Map.class.isAssignableFrom(associatedClass)) {
+			associatedClasses.add(associatedClass);
 		}
+	}
+
+	static String lineSeparator(OutputConfig outputConfig) {
+		String lineSeparator = ObjectWriters.lineSeparator(outputConfig.getLineEnding());
+		return lineSeparator != null ? lineSeparator : "\n";
+	}
+
+	/**
+	 * Introspects the provided classes in parallel and returns their models. Models are
+	 * cached like the models created with {@link #createModel(Class, OutputConfig)}. The
+	 * classes are introspected on the executor of the default engine, by at most as many
+	 * threads as there are processors available.
+	 *
+	 * @param classes the model classes
+	 * @param outputConfig configuration for the generator
+	 * @return the models in the iteration order of the provided classes
+	 *
+	 * @see ModelGeneratorEngine#createModels(Collection, OutputConfig, int)
+	 */
+	public static Map<Class<?>, ModelBean> createModels(Collection<Class<?>> classes,
+			OutputConfig outputConfig) {
+		return defaultEngine.createModels(classes, outputConfig);
+	}
+
+	/**
+	 * Introspects all {@link Model} classes listed in the {@link ModelIndex indexes} on
+	 * the classpath and generates their Javascript code with every provided config, so
+	 * the caches are warm before the first request. For debug configs only the models
+	 * are created. The indexes are written by the {@link ModelAnnotationProcessor}.
+	 *
+	 * @param outputConfigs the configs the code is generated with
+	 * @return number of model classes found in the indexes
+	 *
+	 * @see ModelGeneratorEngine#warmUp(ClassLoader, Collection)
+	 */
+	public static int warmUp(OutputConfig... outputConfigs) {
+		return defaultEngine.warmUp(outputConfigs);
+	}
+
+	public static ModelBean createModel(final Class<?> clazz, OutputConfig outputConfig) {
+		return defaultEngine.createModel(clazz, outputConfig);
+	}
+
+	/**
+	 * Rough estimate of the memory used by a model in bytes.
+	 */
+	static long estimateWeight(ModelBean model) {
+		return 256 + model.getFields().size() * 160L
+				+ model.getValidations().size() * 96L
+				+ model.getAssociations().size() * 128L;
+	}
 
+	static ModelBean introspect(final Class<?> clazz,
+			final OutputConfig outputConfig) {
 		Model modelAnnotation = clazz.getAnnotation(Model.class);
 
 		final ModelBean model = new ModelBean();
 
-		if (modelAnnotation != null && StringUtils.hasText(modelAnnotation.value())) {
-			model.setName(modelAnnotation.value());
-		}
-		else {
-			model.setName(clazz.getName());
-		}
+		model.setName(getModelName(clazz));
 
 		if (modelAnnotation != null) {
 			model.setAutodetectTypes(modelAnnotation.autodetectTypes());
@@ -379,12 +570,21 @@ public abstract class ModelGenerator {
 		final Set<String> readMethods = new HashSet<>();
 
 		BeanInfo bi;
+		GeneratorEvents.BeanInfo beanInfoEvent = new GeneratorEvents.BeanInfo();
+		beanInfoEvent.begin();
 		try {
 			bi = Introspector.getBeanInfo(clazz);
 		}
 		catch (IntrospectionException e) {
 			throw new RuntimeException(e);
 		}
+		finally {
+			beanInfoEvent.end();
+			if (beanInfoEvent.shouldCommit()) {
+				beanInfoEvent.className = clazz.getName();
+				beanInfoEvent.commit();
+			}
+		}
 
 		for (PropertyDescriptor pd : bi.getPropertyDescriptors()) {
 			if (pd.getReadMethod() != null
@@ -483,7 +683,6 @@ public abstract class ModelGenerator {
 
 		}
 
-		modelCache.put(key, new SoftReference<>(model));
 		return model;
 	}
 
@@ -716,41 +915,48 @@ public abstract class ModelGenerator {
 	}
 
 	public static String generateJavascript(ModelBean model, OutputConfig outputConfig) {
+		return defaultEngine.generateJavascript(model, outputConfig);
+	}
 
-		if (!outputConfig.isDebug()) {
-			JsCacheKey key = new JsCacheKey(model, outputConfig);
-
-			SoftReference<String> jsReference = jsCache.get(key);
-			if (jsReference != null && jsReference.get() != null) {
-				return jsReference.get();
-			}
-		}
-
-		JsonMapper.Builder mapperBuilder = JsonMapper.builder()
-				.configure(MapperFeature.DEFAULT_VIEW_INCLUSION, true)
-				.configure(JsonWriteFeature.QUOTE_PROPERTY_NAMES, false);
+	/**
+	 * Creates JS code based on the provided {@link ModelBean} and writes it into the
+	 * provided writer. If the code is not already cached it is rendered directly into the
+	 * writer without building an intermediate String and without adding it to the cache.
+	 * The writer is flushed but not closed.
+	 *
+	 * @param model generate code based on this {@link ModelBean}
+	 * @param outputConfig configuration for the generator
+	 * @param writer receives the JS code
+	 * @throws IOException if writing fails
+	 */
+	public static void generateJavascript(ModelBean model, OutputConfig outputConfig,
+			Writer writer) throws IOException {
+		defaultEngine.generateJavascript(model, outputConfig, writer);
+	}
 
-		if (!outputConfig.isSurroundApiWithQuotes()) {
-			if (outputConfig.getOutputFormat() == OutputFormat.EXTJS5) {
-				mapperBuilder.addMixIn(ProxyObject.class,
-						ProxyObjectWithoutApiQuotesExtJs5Mixin.class);
-			}
-			else {
-				mapperBuilder.addMixIn(ProxyObject.class,
-						ProxyObjectWithoutApiQuotesMixin.class);
-			}
-			mapperBuilder.addMixIn(ApiObject.class, ApiObjectMixin.class);
-		}
-		else if (outputConfig.getOutputFormat() != OutputFormat.EXTJS5) {
-			mapperBuilder.addMixIn(ProxyObject.class,
-					ProxyObjectWithApiQuotesMixin.class);
-		}
+	/**
+	 * Creates JS code based on the provided {@link ModelBean} and writes it UTF-8 encoded
+	 * into the provided stream. If the code is not already cached it is rendered
+	 * directly into the stream without building an intermediate String and without
+	 * adding it to the cache. The stream is flushed but not closed.
+	 *
+	 * @param model generate code based on this {@link ModelBean}
+	 * @param outputConfig configuration for the generator
+	 * @param out receives the JS code
+	 * @throws IOException if writing fails
+	 */
+	public static void generateJavascript(ModelBean model, OutputConfig outputConfig,
+			OutputStream out) throws IOException {
+		defaultEngine.generateJavascript(model, outputConfig, out);
+	}
 
+	private static Map<String, Object> createModelObject(ModelBean model,
+			OutputConfig outputConfig) {
 		Map<String, Object> modelObject = new LinkedHashMap<>();
 		modelObject.put("extend", model.getExtend());
 
 		if (!model.getAssociations().isEmpty()) {
-			Set<String> usesClasses = new HashSet<>();
+			Set<String> usesClasses = new TreeSet<>();
 			for (AbstractAssociation association : model.getAssociations()) {
 				usesClasses.add(association.getModel());
 			}
@@ -766,11 +972,22 @@ public abstract class ModelGenerator {
 		ProxyObject proxyObject = new ProxyObject(model, outputConfig);
 
 		Map<String, ModelFieldBean> fields = model.getFields();
-		Set<String> requires = new HashSet<>();
+		// sorted sets keep the generated code (and its ETag) identical on every JVM
+		Set<String> requires = new TreeSet<>();
+		Map<String, List<AbstractValidation>> fieldValidators = Collections.emptyMap();
 
 		if (!model.getValidations().isEmpty()
 				&& outputConfig.getOutputFormat() == OutputFormat.EXTJS5) {
-			requires = addValidatorsToField(fields, model.getValidations());
+			GeneratorEvents.ValidationMapping event = new GeneratorEvents.ValidationMapping();
+			event.begin();
+			fieldValidators = collectValidators(fields, model.getValidations(),
+					requires);
+			event.end();
+			if (event.shouldCommit()) {
+				event.modelName = model.getName();
+				event.validations = model.getValidations().size();
+				event.commit();
+			}
 		}
 
 		if (proxyObject.hasContent()
@@ -825,12 +1042,13 @@ public abstract class ModelGenerator {
 			}
 		}
 
-		for (ModelFieldBean field : fields.values()) {
-			field.updateTypes(outputConfig);
-		}
-
 		List<Object> fieldConfigObjects = new ArrayList<>();
-		for (ModelFieldBean field : fields.values()) {
+		for (ModelFieldBean modelField : fields.values()) {
+			ModelFieldBean field = modelField.withUpdatedTypes(outputConfig);
+			List<AbstractValidation> validators = fieldValidators.get(field.getName());
+			if (validators != null) {
+				field = field.withValidators(validators);
+			}
 			if (field.hasOnlyName(outputConfig)) {
 				fieldConfigObjects.add(field.getName());
 			}
@@ -865,70 +1083,61 @@ public abstract class ModelGenerator {
 			modelObject.put("config", configObject);
 		}
 
-		StringBuilder sb = new StringBuilder();
-		sb.append("Ext.define(\"").append(model.getName()).append("\",");
-		if (outputConfig.isDebug()) {
-			sb.append("\r\n");
-		}
-
-		String configObjectString;
-		Class<?> jsonView = JsonViews.ExtJS4.class;
-		if (outputConfig.getOutputFormat() == OutputFormat.TOUCH2) {
-			jsonView = JsonViews.Touch2.class;
-		}
-		else if (outputConfig.getOutputFormat() == OutputFormat.EXTJS5) {
-			jsonView = JsonViews.ExtJS5.class;
-		}
-
-		ObjectMapper mapper = mapperBuilder.build();
-		if (outputConfig.isDebug()) {
-			configObjectString = mapper.writerWithDefaultPrettyPrinter()
-					.withView(jsonView).writeValueAsString(modelObject);
-		}
-		else {
-			configObjectString = mapper.writerWithView(jsonView)
-					.writeValueAsString(modelObject);
-		}
-
-		sb.append(configObjectString);
-		sb.append(");");
-
-		String result = sb.toString();
-
-		if (outputConfig.isUseSingleQuotes()) {
-			result = result.replace('"', '\'');
-		}
+		return modelObject;
+	}
 
-		if (outputConfig.getLineEnding() == LineEnding.CRLF) {
-			result = result.replaceAll("\r?\n", "\r\n");
-		}
-		else if (outputConfig.getLineEnding() == LineEnding.LF) {
-			result = result.replaceAll("\r?\n", "\n");
-		}
-		else if (outputConfig.getLineEnding() == LineEnding.SYSTEM) {
-			String lineSeparator = System.getProperty("line.separator");
-			result = result.replaceAll("\r?\n", lineSeparator);
+	/**
+	 * Writes the JS code of the model with the provided writer. The writer must match
+	 * the output config, see {@link ObjectWriters#get(OutputConfig)}.
+	 */
+	static void write(ModelBean model, OutputConfig outputConfig,
+			ObjectWriter objectWriter, Writer out) throws IOException {
+		Map<String, Object> modelObject = createModelObject(model, outputConfig);
+
+		String quote = outputConfig.isUseSingleQuotes() ? "'" : "\"";
+		try (JsonGenerator generator = objectWriter.createGenerator(out)) {
+			generator.writeRaw("Ext.define(");
+			generator.writeRaw(quote);
+			generator.writeRaw(model.getName());
+			generator.writeRaw(quote);
+			generator.writeRaw(",");
+			if (outputConfig.isDebug()) {
+				String lineSeparator = ObjectWriters
+						.lineSeparator(outputConfig.getLineEnding());
+				generator.writeRaw(lineSeparator != null ? lineSeparator : "\r\n");
+			}
+			objectWriter.writeValue(generator, modelObject);
+			generator.writeRaw(");");
 		}
-
-		if (!outputConfig.isDebug()) {
-			jsCache.put(new JsCacheKey(model, outputConfig), new SoftReference<>(result));
+		catch (JacksonIOException e) {
+			throw e.getCause();
 		}
-		return result;
 	}
 
-	private static Set<String> addValidatorsToField(Map<String, ModelFieldBean> fields,
-			List<AbstractValidation> validations) {
+	/**
+	 * Assigns the model validations to the fields they validate. Does not modify the
+	 * fields, instead returns for every validated field the list of its existing
+	 * validators followed by the assigned validations.
+	 *
+	 * @param fields the fields of the model
+	 * @param validations the validations of the model
+	 * @param requires receives the names of the required validator classes
+	 * @return the validators of every validated field, keyed by field name
+	 */
+	private static Map<String, List<AbstractValidation>> collectValidators(
+			Map<String, ModelFieldBean> fields, List<AbstractValidation> validations,
+			Set<String> requires) {
 
-		Set<String> requires = new TreeSet<>();
+		Map<String, List<AbstractValidation>> fieldValidators = new HashMap<>();
 
 		for (ModelFieldBean field : fields.values()) {
 			for (AbstractValidation validation : validations) {
 				if (field.getName().equals(validation.getField())) {
-					List<AbstractValidation> validators = field.getValidators();
-					if (validators == null) {
-						validators = new ArrayList<>();
-						field.setValidators(validators);
-					}
+					List<AbstractValidation> validators = fieldValidators
+							.computeIfAbsent(field.getName(), k -> field
+									.getValidators() != null
+											? new ArrayList<>(field.getValidators())
+											: new ArrayList<>());
 
 					String validatorClass = getValidatorClass(validation.getType());
 					if (validatorClass != null) {
@@ -950,7 +1159,7 @@ public abstract class ModelGenerator {
 			}
 		}
 
-		return requires;
+		return fieldValidators;
 	}
 
 	private static String getValidatorClass(String type) {
@@ -988,18 +1197,212 @@ public abstract class ModelGenerator {
 		return null;
 	}
 
+	/**
+	 * Sets the maximum time a thread waits for a model or JS code that is being generated
+	 * by another thread at the same time. Concurrent requests for the same model are
+	 * coalesced: only one thread introspects the class and generates the code, all the
+	 * other threads wait for its result. If the wait times out an
+	 * {@link IllegalStateException} is thrown.
+	 * <p>
+	 * Defaults to 30 seconds
+	 *
+	 * @param timeout the new maximum wait time, at least one millisecond
+	 */
+	public static void setConcurrentGenerationTimeout(Duration timeout) {
+		defaultEngine.setConcurrentGenerationTimeout(timeout);
+	}
+
+	/**
+	 * Sets the maximum weight of the model cache. The weight of a model is an estimate of
+	 * its size in bytes. When the cache grows beyond this size the least frequently used
+	 * models are evicted.
+	 * <p>
+	 * Defaults to 16 MB
+	 *
+	 * @param maximumWeight maximum weight in bytes, 0 disables caching of models
+	 */
+	public static void setModelCacheMaximumWeight(long maximumWeight) {
+		defaultEngine.setModelCacheMaximumWeight(maximumWeight);
+	}
+
+	/**
+	 * Sets the maximum weight of the cache that holds the generated Javascript code of
+	 * models and bundles. The weight of an entry is an estimate of the size of the code
+	 * and its encoded representations in bytes. When the cache grows beyond this size the
+	 * least frequently used entries are evicted.
+	 * <p>
+	 * Defaults to 64 MB
+	 *
+	 * @param maximumWeight maximum weight in bytes, 0 disables caching of Javascript code
+	 */
+	public static void setJsCacheMaximumWeight(long maximumWeight) {
+		defaultEngine.setJsCacheMaximumWeight(maximumWeight);
+	}
+
+	/**
+	 * Replaces the model and Javascript code caches with caches created by the provided
+	 * provider. The current caches are cleared. The new caches are created with the
+	 * configured maximum weights.
+	 *
+	 * @param cacheProvider the provider, null restores the default weighted caches
+	 */
+	public static void setCacheProvider(CacheProvider cacheProvider) {
+		defaultEngine.setCacheProvider(cacheProvider);
+	}
+
+	/**
+	 * @return statistics of the model cache
+	 */
+	public static CacheStats getModelCacheStats() {
+		return defaultEngine.getModelCacheStats();
+	}
+
+	/**
+	 * @return statistics of the cache with the Javascript code of models and bundles
+	 */
+	public static CacheStats getJsCacheStats() {
+		return defaultEngine.getJsCacheStats();
+	}
+
+	/**
+	 * Pins the model and the Javascript code of the provided class in the caches. Pinned
+	 * entries are never evicted, even if the caches grow beyond their maximum weight.
+	 * {@link #clearCaches()} still removes them. Only the class itself is pinned, not a
+	 * class with the same name from another classloader, and not code generated from a
+	 * {@link ModelBean} provided by the caller.
+	 *
+	 * @param clazz the model class
+	 */
+	public static void pin(Class<?> clazz) {
+		defaultEngine.pin(clazz);
+	}
+
+	/**
+	 * Removes the pin set with {@link #pin(Class)}.
+	 *
+	 * @param clazz the model class
+	 */
+	public static void unpin(Class<?> clazz) {
+		defaultEngine.unpin(clazz);
+	}
+
+	static String getModelName(Class<?> clazz) {
+		Model modelAnnotation = clazz.getAnnotation(Model.class);
+		if (modelAnnotation != null && StringUtils.hasText(modelAnnotation.value())) {
+			return modelAnnotation.value();
+		}
+		return clazz.getName();
+	}
+
+	/**
+	 * @return the number of models in the model cache
+	 */
+	static int cachedModelCount() {
+		return defaultEngine.cachedModelCount();
+	}
+
+	static int cachedJsCount() {
+		return defaultEngine.cachedJsCount();
+	}
+
 	/**
 	 * Clears the model and Javascript code caches
 	 */
 	public static void clearCaches() {
-		modelCache.clear();
-		jsCache.clear();
+		defaultEngine.clearCaches();
+	}
+
+	/**
+	 * Removes the models of the provided class, the Javascript code of its model and all
+	 * bundles that contain the class from the caches. Pinned entries are removed too.
+	 * Classes with the same name from other class loaders and models created
+	 * programmatically are not affected, see {@link #invalidate(String)} for these.
+	 *
+	 * @param clazz the model class
+	 */
+	public static void invalidate(Class<?> clazz) {
+		defaultEngine.invalidate(clazz);
+	}
+
+	/**
+	 * Removes all models with the provided name, their Javascript code and all bundles
+	 * that contain one of these models from the caches. Also removes the code of models
+	 * that have been created programmatically. Pinned entries are removed too.
+	 *
+	 * @param modelName the name of the model, by default the fully qualified class name
+	 */
+	public static void invalidate(String modelName) {
+		defaultEngine.invalidate(modelName);
+	}
+
+	/**
+	 * Removes the Javascript code of all models and bundles that have been generated
+	 * with the provided config from the cache. The models themselves are shared by all
+	 * rendering options and stay in the cache.
+	 *
+	 * @param outputConfig the config
+	 */
+	public static void invalidate(OutputConfig outputConfig) {
+		defaultEngine.invalidate(outputConfig);
+	}
+
+	/**
+	 * Registers a listener that is notified about every entry that is evicted from or
+	 * invalidated in the caches.
+	 *
+	 * @param listener the listener
+	 */
+	public static void addCacheListener(CacheListener listener) {
+		defaultEngine.addCacheListener(listener);
+	}
+
+	/**
+	 * Removes a listener registered with {@link #addCacheListener(CacheListener)}.
+	 *
+	 * @param listener the listener
+	 */
+	public static void removeCacheListener(CacheListener listener) {
+		defaultEngine.removeCacheListener(listener);
+	}
+
+	/**
+	 * Registers a listener that is notified after every call of {@code createModel},
+	 * {@code generateJavascript} and {@code writeModel} with the phase timings, the cache
+	 * outcome and the output size of the call.
+	 *
+	 * @param listener the listener
+	 */
+	public static void addGenerationListener(GenerationListener listener) {
+		defaultEngine.addGenerationListener(listener);
+	}
+
+	/**
+	 * Removes a listener registered with {@link #addGenerationListener(GenerationListener)}.
+	 *
+	 * @param listener the listener
+	 */
+	public static void removeGenerationListener(GenerationListener listener) {
+		defaultEngine.removeGenerationListener(listener);
+	}
+
+	/**
+	 * Sets the duration from which on a call is reported to
+	 * {@link GenerationListener#onSlowGeneration(GenerationEvent)}.
+	 * <p>
+	 * Defaults to {@link Duration#ZERO}, which disables the reporting of slow calls
+	 *
+	 * @param threshold the new threshold
+	 */
+	public static void setSlowGenerationThreshold(Duration threshold) {
+		defaultEngine.setSlowGenerationThreshold(threshold);
 	}
 
 	private static <A extends Annotation> Set<A> getRepeatableAnnotations(
 			AnnotatedElement annotatedElement, Class<A> annotationType) {
 
-		return MergedAnnotations
+		GeneratorEvents.AnnotationScan event = new GeneratorEvents.AnnotationScan();
+		event.begin();
+		Set<A> annotations = MergedAnnotations
 				.from(annotatedElement, SearchStrategy.SUPERCLASS,
 						RepeatableContainers.standardRepeatables())
 				.stream(annotationType)
@@ -1007,6 +1410,14 @@ public abstract class ModelGenerator {
 						.firstRunOf(MergedAnnotation::getAggregateIndex))
 				.map(MergedAnnotation::withNonMergedAttributes)
 				.collect(MergedAnnotationCollectors.toAnnotationSet());
+		event.end();
+		if (event.shouldCommit()) {
+			event.element = annotatedElement.toString();
+			event.annotationType = annotationType.getName();
+			event.found = annotations.size();
+			event.commit();
+		}
+		return annotations;
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,1249 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Generator instance that owns its caches, its Jackson writers, its cache statistics and
+ * the executor used for parallel work. Engines are independent of each other: each one
+ * can have its own cache provider and size limits, and dropping an engine releases
+ * everything it cached. The static methods of {@link ModelGenerator} delegate to a
+ * default engine, see {@link ModelGenerator#getDefaultEngine()}.
+ * <p>
+ * Instances are thread safe.
+ */
+public final class ModelGeneratorEngine {
+
+	static final long DEFAULT_MODEL_CACHE_MAXIMUM_WEIGHT = 16L * 1024 * 1024;
+
+	static final long DEFAULT_JS_CACHE_MAXIMUM_WEIGHT = 64L * 1024 * 1024;
+
+	private final ObjectWriters objectWriters = new ObjectWriters();
+
+	private final Executor executor;
+
+	private final int parallelism;
+
+	private final ModelGeneratorStatistics statistics = new ModelGeneratorStatistics(
+			this);
+
+	private volatile ObjectName mbeanName;
+
+	private final Set<ClassToken> pinnedClasses = ConcurrentHashMap.newKeySet();
+
+	private final List<CacheListener> cacheListeners = new CopyOnWriteArrayList<>();
+
+	private volatile long modelCacheMaximumWeight;
+
+	private volatile long jsCacheMaximumWeight;
+
+	private volatile GeneratorCache<ModelCacheKey, ModelBean> modelCache;
+
+	/**
+	 * Contains the code of single models ({@link JsCacheKey}) and of bundles
+	 * ({@link BundleCacheKey}). Both share the same maximum weight.
+	 */
+	private volatile GeneratorCache<Object, JsCacheEntry> jsCache;
+
+	private final SingleFlight<ModelCacheKey, ModelBean> modelFlight = new SingleFlight<>();
+
+	private final SingleFlight<JsCacheKey, JsCacheEntry> jsFlight = new SingleFlight<>();
+
+	private final SingleFlight<BundleCacheKey, JsCacheEntry> bundleFlight = new SingleFlight<>();
+
+	private volatile long concurrentGenerationTimeoutMillis;
+
+	private volatile long seenUnloadedCount;
+
+	private final List<GenerationListener> generationListeners = new CopyOnWriteArrayList<>();
+
+	private volatile long slowGenerationThresholdNanos;
+
+	/**
+	 * Creates an engine with the default settings
+	 */
+	public ModelGeneratorEngine() {
+		this(new Builder());
+	}
+
+	private ModelGeneratorEngine(Builder builder) {
+		this.executor = builder.executor != null ? builder.executor
+				: ForkJoinPool.commonPool();
+		this.parallelism = builder.parallelism;
+		this.modelCacheMaximumWeight = builder.modelCacheMaximumWeight;
+		this.jsCacheMaximumWeight = builder.jsCacheMaximumWeight;
+		this.concurrentGenerationTimeoutMillis = builder.concurrentGenerationTimeout
+				.toMillis();
+		this.slowGenerationThresholdNanos = builder.slowGenerationThreshold.toNanos();
+		CacheProvider provider = builder.cacheProvider != null ? builder.cacheProvider
+				: WeightedCache.PROVIDER;
+		this.modelCache = createModelCache(provider);
+		this.jsCache = createJsCache(provider);
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return the executor this engine uses for parallel work
+	 */
+	public Executor getExecutor() {
+		return this.executor;
+	}
+
+	/**
+	 * @see ModelGenerator#writeModel(HttpServletRequest, HttpServletResponse, Class,
+	 * OutputConfig)
+	 */
+	public void writeModel(HttpServletRequest request, HttpServletResponse response,
+			Class<?> clazz, OutputConfig outputConfig) throws IOException {
+		Assert.notNull(clazz, "clazz must not be null");
+
+		GeneratorEvents.Serve event = new GeneratorEvents.Serve();
+		event.begin();
+		GenerationTrace trace = GenerationTrace.begin(this.generationListeners);
+		try {
+			String fingerprint = fingerprint(clazz, outputConfig);
+			if (fingerprint == null) {
+				writeEntry(request, response, generateJsCacheEntry(clazz,
+						loadModel(clazz, outputConfig), outputConfig), event, trace, clazz,
+						outputConfig);
+				return;
+			}
+
+			ContentEncoding encoding = ContentEncoding
+					.negotiate(request.getHeader("Accept-Encoding"));
+			String etag = ModelFingerprint.etag(fingerprint, encoding);
+			// a compressed request is answered with the identity representation if
+			// compressing does not make the code smaller, see JsCacheEntry#getVariant
+			boolean identityMatched = false;
+			if (!etag.equals(request.getHeader("If-None-Match"))
+					&& fingerprint.equals(request.getHeader("If-None-Match"))) {
+				etag = fingerprint;
+				identityMatched = true;
+			}
+			if (isNotModified(request, response, etag)) {
+				served(event, trace, clazz, outputConfig,
+						identityMatched ? null : encoding.getHeaderValue(), true, 0);
+				return;
+			}
+
+			JsCacheEntry entry = generateJsCacheEntry(clazz,
+					loadModel(clazz, outputConfig), outputConfig);
+			JsCacheEntry.Variant variant = entry.getVariant(encoding);
+			if (variant.getContentEncoding() == null) {
+				response.setHeader("ETag", fingerprint);
+			}
+			writeVariant(response, variant);
+			served(event, trace, clazz, outputConfig, variant.getContentEncoding(),
+					false, variant.getData().length);
+		}
+		finally {
+			GenerationTrace.end(trace);
+		}
+	}
+
+	private static String fingerprint(Class<?> clazz, OutputConfig outputConfig) {
+		GeneratorEvents.Fingerprint event = new GeneratorEvents.Fingerprint();
+		event.begin();
+		String fingerprint = ModelFingerprint.etag(clazz, outputConfig);
+		event.end();
+		if (event.shouldCommit()) {
+			event.className = clazz.getName();
+			event.outputFormat = String.valueOf(outputConfig.getOutputFormat());
+			event.commit();
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * @see ModelGenerator#writeModel(HttpServletRequest, HttpServletResponse, ModelBean,
+	 * OutputConfig)
+	 */
+	public void writeModel(HttpServletRequest request, HttpServletResponse response,
+			ModelBean model, OutputConfig outputConfig) throws IOException {
+		GeneratorEvents.Serve event = new GeneratorEvents.Serve();
+		event.begin();
+		GenerationTrace trace = GenerationTrace.begin(this.generationListeners);
+		try {
+			writeEntry(request, response, generateJsCacheEntry(model, outputConfig),
+					event, trace, null, outputConfig);
+		}
+		finally {
+			GenerationTrace.end(trace);
+		}
+	}
+
+	/**
+	 * @see ModelGenerator#writeModels(HttpServletRequest, HttpServletResponse,
+	 * Collection, OutputConfig)
+	 */
+	public void writeModels(HttpServletRequest request, HttpServletResponse response,
+			Collection<Class<?>> classes, OutputConfig outputConfig) throws IOException {
+		GeneratorEvents.Serve event = new GeneratorEvents.Serve();
+		event.begin();
+		GenerationTrace trace = GenerationTrace.begin(this.generationListeners);
+		try {
+			writeEntry(request, response, generateBundle(classes, outputConfig), event,
+					trace, null, outputConfig);
+		}
+		finally {
+			GenerationTrace.end(trace);
+		}
+	}
+
+	/**
+	 * @see ModelGenerator#writeModelWithAssociations(HttpServletRequest,
+	 * HttpServletResponse, Class, OutputConfig)
+	 */
+	public void writeModelWithAssociations(HttpServletRequest request,
+			HttpServletResponse response, Class<?> rootClass, OutputConfig outputConfig)
+			throws IOException {
+		Assert.notNull(rootClass, "rootClass must not be null");
+
+		GeneratorEvents.Serve event = new GeneratorEvents.Serve();
+		event.begin();
+		GenerationTrace trace = GenerationTrace.begin(this.generationListeners);
+		try {
+			BundleCacheKey key = null;
+			if (!outputConfig.isDebug()) {
+				// the key only holds the root class, the associated classes are resolved
+				// on a miss and stored in the entry (JsCacheEntry#getMembers)
+				key = new BundleCacheKey(
+						Collections.singletonList(ClassToken.of(rootClass)), outputConfig,
+						true);
+			}
+
+			writeEntry(request, response,
+					getOrCreateBundle(key,
+							() -> ModelGenerator.collectAssociatedClasses(rootClass),
+							outputConfig),
+					event, trace, rootClass, outputConfig);
+		}
+		finally {
+			GenerationTrace.end(trace);
+		}
+	}
+
+	/**
+	 * @see ModelGenerator#createModel(Class, OutputConfig)
+	 */
+	public ModelBean createModel(Class<?> clazz, OutputConfig outputConfig) {
+		GenerationTrace trace = GenerationTrace.begin(this.generationListeners);
+		try {
+			ModelBean model = loadModel(clazz, outputConfig);
+			if (trace != null) {
+				fireGeneration(trace, GenerationEvent.Operation.CREATE_MODEL,
+						clazz.getName(), model.getName(), outputConfig, -1);
+			}
+			return model;
+		}
+		finally {
+			GenerationTrace.end(trace);
+		}
+	}
+
+	private ModelBean loadModel(Class<?> clazz, OutputConfig outputConfig) {
+		Assert.notNull(clazz, "clazz must not be null");
+		Assert.notNull(outputConfig.getIncludeValidation(),
+				"includeValidation must not be null");
+
+		GeneratorEvents.CreateModel event = new GeneratorEvents.CreateModel();
+		event.begin();
+
+		OutputConfig config = OutputConfig.canonical(outputConfig);
+
+		ModelCacheKey key = ClassToken.of(clazz).modelCacheKey(config);
+		ModelBean model = this.modelCache.get(key);
+		boolean cacheHit = model != null;
+		if (!cacheHit) {
+			removeUnloadedClasses();
+
+			model = this.modelFlight.execute(key,
+					() -> this.modelCache.computeIfAbsent(key,
+							k -> introspect(clazz, config)),
+					this.concurrentGenerationTimeoutMillis);
+		}
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.className = clazz.getName();
+			event.includeValidation = String.valueOf(config.getIncludeValidation());
+			event.cacheHit = cacheHit;
+			event.commit();
+		}
+		return model;
+	}
+
+	/**
+	 * @see ModelGenerator#createModels(Collection, OutputConfig)
+	 */
+	public Map<Class<?>, ModelBean> createModels(Collection<Class<?>> classes,
+			OutputConfig outputConfig) {
+		return createModels(classes, outputConfig, this.parallelism);
+	}
+
+	/**
+	 * Introspects the provided classes in parallel and returns their models. Works like
+	 * calling {@link #createModel(Class, OutputConfig)} for every class: models already
+	 * in the cache are returned from the cache, the others are added to it. The classes
+	 * are introspected by at most {@code parallelism} threads: the calling thread and
+	 * tasks submitted to the {@link #getExecutor() executor} of this engine.
+	 * <p>
+	 * If a class cannot be introspected no more classes are started and the exception is
+	 * thrown after the running introspections have finished.
+	 *
+	 * @param classes the model classes
+	 * @param outputConfig configuration for the generator
+	 * @param parallelism maximum number of classes introspected at the same time
+	 * @return the models in the iteration order of the provided classes, duplicates are
+	 * contained once
+	 */
+	public Map<Class<?>, ModelBean> createModels(Collection<Class<?>> classes,
+			OutputConfig outputConfig, int parallelism) {
+		Assert.notNull(classes, "classes must not be null");
+		Assert.isTrue(parallelism > 0, "parallelism must be greater than 0");
+
+		List<Class<?>> uniqueClasses = new ArrayList<>(new LinkedHashSet<>(classes));
+		ModelBean[] models = new ModelBean[uniqueClasses.size()];
+		runParallel(models.length, parallelism,
+				i -> models[i] = createModel(uniqueClasses.get(i), outputConfig));
+
+		Map<Class<?>, ModelBean> result = new LinkedHashMap<>(
+				(int) (models.length / 0.75f) + 1);
+		for (int i = 0; i < models.length; i++) {
+			result.put(uniqueClasses.get(i), models[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Warms up the caches with the {@link Model} classes listed in the
+	 * {@link ModelIndex indexes} on the classpath of the default class loader.
+	 *
+	 * @see #warmUp(ClassLoader, Collection)
+	 */
+	public int warmUp(OutputConfig... outputConfigs) {
+		return warmUp(null, Arrays.asList(outputConfigs));
+	}
+
+	/**
+	 * Warms up the caches with the {@link Model} classes listed in the
+	 * {@link ModelIndex indexes} the class loader finds. Introspects every class and
+	 * generates its Javascript code with every provided config, in parallel like
+	 * {@link #createModels(Collection, OutputConfig)}. The code of debug configs is not
+	 * cached, for them only the models are created. Classes that fail are logged and
+	 * skipped.
+	 *
+	 * @param classLoader the class loader that reads the indexes and loads the classes,
+	 * null uses the default class loader
+	 * @param outputConfigs the configs the code is generated with
+	 * @return number of model classes found in the indexes
+	 */
+	public int warmUp(ClassLoader classLoader, Collection<OutputConfig> outputConfigs) {
+		Assert.notEmpty(outputConfigs, "outputConfigs must not be empty");
+
+		List<OutputConfig> configs = new ArrayList<>(outputConfigs);
+		List<Class<?>> classes = ModelIndex.load(classLoader);
+		runParallel(classes.size() * configs.size(), this.parallelism, i -> {
+			Class<?> clazz = classes.get(i / configs.size());
+			OutputConfig config = configs.get(i % configs.size());
+			try {
+				if (config.isDebug()) {
+					loadModel(clazz, config);
+				}
+				else {
+					generateJavascript(clazz, config);
+				}
+			}
+			catch (RuntimeException e) {
+				LogFactory.getLog(ModelGenerator.class)
+						.warn("Warming up model " + clazz.getName() + " failed", e);
+			}
+		});
+		return classes.size();
+	}
+
+	/**
+	 * Runs the task for every index from 0 to count - 1 on at most parallelism threads,
+	 * the calling thread included. Does not wait for executor threads that have not
+	 * started before the calling thread finished. After the first failure no more tasks
+	 * are started, the failure is thrown after the running tasks have finished.
+	 */
+	private void runParallel(int count, int parallelism, IntConsumer task) {
+		AtomicInteger next = new AtomicInteger();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		Runnable worker = () -> {
+			int i;
+			while (failure.get() == null && (i = next.getAndIncrement()) < count) {
+				try {
+					task.accept(i);
+				}
+				catch (RuntimeException | Error e) {
+					failure.compareAndSet(null, e);
+				}
+			}
+		};
+
+		int workers = Math.min(parallelism, count);
+		List<AtomicBoolean> started = new ArrayList<>(workers);
+		List<CompletableFuture<Void>> futures = new ArrayList<>(workers);
+		for (int i = 1; i < workers; i++) {
+			AtomicBoolean taskStarted = new AtomicBoolean();
+			try {
+				futures.add(CompletableFuture.runAsync(() -> {
+					if (taskStarted.compareAndSet(false, true)) {
+						worker.run();
+					}
+				}, this.executor));
+				started.add(taskStarted);
+			}
+			catch (RejectedExecutionException e) {
+				break;
+			}
+		}
+		// the calling thread works too. Tasks the executor has not started yet when the
+		// calling thread runs out of work are claimed by it and turn into no-ops, so only
+		// tasks that are already running are waited for and the call completes even if
+		// the executor never starts the tasks.
+		worker.run();
+		for (int i = 0; i < futures.size(); i++) {
+			if (!started.get(i).compareAndSet(false, true)) {
+				futures.get(i).join();
+			}
+		}
+
+		Throwable e = failure.get();
+		if (e instanceof RuntimeException) {
+			throw (RuntimeException) e;
+		}
+		if (e != null) {
+			throw (Error) e;
+		}
+	}
+
+	/**
+	 * @see ModelGenerator#generateJavascript(Class, OutputConfig)
+	 */
+	public String generateJavascript(Class<?> clazz, OutputConfig outputConfig) {
+		GenerationTrace trace = GenerationTrace.begin(this.generationListeners);
+		try {
+			ModelBean model = loadModel(clazz, outputConfig);
+			String javascript = generateJsCacheEntry(clazz, model, outputConfig)
+					.getJavascript();
+			if (trace != null) {
+				fireGeneration(trace, GenerationEvent.Operation.GENERATE_JAVASCRIPT,
+						clazz.getName(), model.getName(), outputConfig,
+						javascript.length());
+			}
+			return javascript;
+		}
+		finally {
+			GenerationTrace.end(trace);
+		}
+	}
+
+	/**
+	 * @see ModelGenerator#generateJavascript(ModelBean, OutputConfig)
+	 */
+	public String generateJavascript(ModelBean model, OutputConfig outputConfig) {
+		GenerationTrace trace = GenerationTrace.begin(this.generationListeners);
+		try {
+			String javascript = generateJsCacheEntry(model, outputConfig)
+					.getJavascript();
+			if (trace != null) {
+				fireGeneration(trace, GenerationEvent.Operation.GENERATE_JAVASCRIPT, null,
+						model.getName(), outputConfig, javascript.length());
+			}
+			return javascript;
+		}
+		finally {
+			GenerationTrace.end(trace);
+		}
+	}
+
+	/**
+	 * @see ModelGenerator#generateJavascript(ModelBean, OutputConfig, Writer)
+	 */
+	public void generateJavascript(ModelBean model, OutputConfig outputConfig,
+			Writer writer) throws IOException {
+		Assert.notNull(writer, "writer must not be null");
+
+		GenerationTrace trace = GenerationTrace.begin(this.generationListeners);
+		try {
+			long size = -1;
+			JsCacheEntry cachedEntry = getCachedJs(model, outputConfig);
+			if (cachedEntry != null) {
+				writer.write(cachedEntry.getJavascript());
+				writer.flush();
+				size = cachedEntry.getJavascript().length();
+			}
+			else {
+				renderTo(model, outputConfig, writer);
+			}
+			if (trace != null) {
+				fireGeneration(trace, GenerationEvent.Operation.GENERATE_JAVASCRIPT, null,
+						model.getName(), outputConfig, size);
+			}
+		}
+		finally {
+			GenerationTrace.end(trace);
+		}
+	}
+
+	/**
+	 * @see ModelGenerator#generateJavascript(ModelBean, OutputConfig, OutputStream)
+	 */
+	public void generateJavascript(ModelBean model, OutputConfig outputConfig,
+			OutputStream out) throws IOException {
+		Assert.notNull(out, "out must not be null");
+
+		GenerationTrace trace = GenerationTrace.begin(this.generationListeners);
+		try {
+			long size = -1;
+			JsCacheEntry cachedEntry = getCachedJs(model, outputConfig);
+			if (cachedEntry != null) {
+				out.write(cachedEntry.getData());
+				out.flush();
+				size = cachedEntry.getJavascript().length();
+			}
+			else {
+				Writer writer = new OutputStreamWriter(out, ModelGenerator.UTF8_CHARSET);
+				renderTo(model, outputConfig, writer);
+				writer.flush();
+			}
+			if (trace != null) {
+				fireGeneration(trace, GenerationEvent.Operation.GENERATE_JAVASCRIPT, null,
+						model.getName(), outputConfig, size);
+			}
+		}
+		finally {
+			GenerationTrace.end(trace);
+		}
+	}
+
+	private JsCacheEntry generateBundle(Collection<Class<?>> classes,
+			OutputConfig outputConfig) {
+		Assert.notEmpty(classes, "classes must not be empty");
+
+		Set<Class<?>> uniqueClasses = new LinkedHashSet<>(classes);
+		BundleCacheKey key = null;
+		if (!outputConfig.isDebug()) {
+			List<ClassToken> classTokens = new ArrayList<>(uniqueClasses.size());
+			for (Class<?> clazz : uniqueClasses) {
+				classTokens.add(ClassToken.of(clazz));
+			}
+			key = new BundleCacheKey(classTokens, outputConfig, false);
+		}
+
+		return getOrCreateBundle(key, () -> uniqueClasses, outputConfig);
+	}
+
+	private JsCacheEntry getOrCreateBundle(BundleCacheKey key,
+			Supplier<Collection<Class<?>>> classes, OutputConfig outputConfig) {
+		if (key == null) {
+			return createBundle(classes.get(), outputConfig);
+		}
+
+		JsCacheEntry cachedBundle = this.jsCache.get(key);
+		if (cachedBundle != null) {
+			return cachedBundle;
+		}
+
+		removeUnloadedClasses();
+
+		OutputConfig config = OutputConfig.canonical(outputConfig);
+		return this.bundleFlight.execute(key, () -> {
+			// the entries of the members are read from and added to the same cache, so
+			// the bundle is created before computeIfAbsent is called
+			JsCacheEntry bundle = createBundle(classes.get(), config);
+			return this.jsCache.computeIfAbsent(key, k -> bundle);
+		}, this.concurrentGenerationTimeoutMillis);
+	}
+
+	private JsCacheEntry createBundle(Collection<Class<?>> classes,
+			OutputConfig outputConfig) {
+		List<JsCacheEntry> entries = new ArrayList<>(classes.size());
+		List<ClassToken> members = new ArrayList<>(classes.size());
+		for (Class<?> clazz : classes) {
+			entries.add(generateJsCacheEntry(clazz, loadModel(clazz, outputConfig),
+					outputConfig));
+			members.add(ClassToken.of(clazz));
+		}
+
+		return JsCacheEntry.concat(entries, ModelGenerator.lineSeparator(outputConfig)
+				.getBytes(ModelGenerator.UTF8_CHARSET), members);
+	}
+
+	private void writeEntry(HttpServletRequest request, HttpServletResponse response,
+			JsCacheEntry entry, GeneratorEvents.Serve event, GenerationTrace trace,
+			Class<?> clazz, OutputConfig outputConfig) throws IOException {
+
+		JsCacheEntry.Variant variant = entry.getVariant(
+				ContentEncoding.negotiate(request.getHeader("Accept-Encoding")));
+		boolean notModified = isNotModified(request, response, variant.getEtag());
+		if (!notModified) {
+			writeVariant(response, variant);
+		}
+		served(event, trace, clazz, outputConfig, variant.getContentEncoding(),
+				notModified, notModified ? 0 : variant.getData().length);
+	}
+
+	private void served(GeneratorEvents.Serve event, GenerationTrace trace,
+			Class<?> clazz, OutputConfig outputConfig, String contentEncoding,
+			boolean notModified, long size) {
+		if (trace != null) {
+			trace.setNotModified(notModified);
+			fireGeneration(trace, GenerationEvent.Operation.WRITE_MODEL,
+					clazz != null ? clazz.getName() : null,
+					clazz != null ? ModelGenerator.getModelName(clazz) : null,
+					outputConfig, size);
+		}
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.className = clazz != null ? clazz.getName() : null;
+			event.outputFormat = String.valueOf(outputConfig.getOutputFormat());
+			event.contentEncoding = contentEncoding;
+			event.notModified = notModified;
+			event.size = size;
+			event.commit();
+		}
+	}
+
+	private static boolean isNotModified(HttpServletRequest request,
+			HttpServletResponse response, String etag) {
+		response.setHeader("ETag", etag);
+		response.setHeader("Vary", "Accept-Encoding");
+
+		if (etag.equals(request.getHeader("If-None-Match"))) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return true;
+		}
+		return false;
+	}
+
+	private static void writeVariant(HttpServletResponse response,
+			JsCacheEntry.Variant variant) throws IOException {
+		long start = System.nanoTime();
+		byte[] data = variant.getData();
+		response.setContentType(JsCacheEntry.CONTENT_TYPE);
+		response.setContentLength(data.length);
+		if (variant.getContentEncoding() != null) {
+			response.setHeader("Content-Encoding", variant.getContentEncoding());
+		}
+
+		@SuppressWarnings("resource")
+		ServletOutputStream out = response.getOutputStream();
+		out.write(data);
+		out.flush();
+		GenerationTrace.recordPhase(GenerationEvent.Phase.WRITING,
+				System.nanoTime() - start);
+	}
+
+	/**
+	 * Removes the models and bundles of classes whose classloader has been unloaded
+	 * (e.g. after a redeploy). Only scans the caches if a class has been unloaded since
+	 * the last call.
+	 */
+	private void removeUnloadedClasses() {
+		long unloadedCount = ClassToken.unloadedCount();
+		if (unloadedCount != this.seenUnloadedCount) {
+			this.seenUnloadedCount = unloadedCount;
+			this.modelCache.invalidateAll((key, model) -> key.getClassToken() != null
+					&& key.getClassToken().isUnloaded(), RemovalCause.UNLOADED);
+			this.jsCache.invalidateAll((key, entry) -> {
+				if (key instanceof JsCacheKey) {
+					ClassToken token = ((JsCacheKey) key).getClassToken();
+					return token != null && token.isUnloaded();
+				}
+				return entry.containsUnloadedClass();
+			}, RemovalCause.UNLOADED);
+		}
+	}
+
+	private JsCacheEntry getCachedJs(ModelBean model, OutputConfig outputConfig) {
+		if (outputConfig.isDebug()) {
+			return null;
+		}
+		return this.jsCache.get(new JsCacheKey(model, outputConfig));
+	}
+
+	private JsCacheEntry generateJsCacheEntry(ModelBean model,
+			OutputConfig outputConfig) {
+		return generateJsCacheEntry(null, model, outputConfig);
+	}
+
+	/**
+	 * @param clazz the class this engine introspected the model from, the code is then
+	 * keyed by the class instead of the structural hash of the model. Null if the model
+	 * was provided by the caller.
+	 */
+	private JsCacheEntry generateJsCacheEntry(Class<?> clazz, ModelBean model,
+			OutputConfig outputConfig) {
+
+		GeneratorEvents.Render event = new GeneratorEvents.Render();
+		event.begin();
+
+		JsCacheEntry entry = null;
+		if (outputConfig.isDebug()) {
+			entry = render(model, outputConfig);
+		}
+		else {
+			OutputConfig config = OutputConfig.canonical(outputConfig);
+			JsCacheKey key = clazz != null ? ClassToken.of(clazz).jsCacheKey(config)
+					: new JsCacheKey(model, config);
+			entry = this.jsCache.get(key);
+			if (entry == null) {
+				entry = this.jsFlight.execute(key,
+						() -> this.jsCache.computeIfAbsent(key, k -> render(model, config)),
+						this.concurrentGenerationTimeoutMillis);
+			}
+			else {
+				event.cacheHit = true;
+			}
+		}
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.modelName = model.getName();
+			event.outputFormat = String.valueOf(outputConfig.getOutputFormat());
+			event.debug = outputConfig.isDebug();
+			event.size = entry.getJavascript().length();
+			event.commit();
+		}
+		return entry;
+	}
+
+	private ModelBean introspect(Class<?> clazz, OutputConfig outputConfig) {
+		long start = System.nanoTime();
+		try {
+			return ModelGenerator.introspect(clazz, outputConfig);
+		}
+		finally {
+			long nanos = System.nanoTime() - start;
+			this.statistics.recordIntrospection(nanos);
+			GenerationTrace.recordPhase(GenerationEvent.Phase.INTROSPECTION, nanos);
+		}
+	}
+
+	private JsCacheEntry render(ModelBean model, OutputConfig outputConfig) {
+		long start = System.nanoTime();
+		StringWriter writer = new StringWriter();
+		try {
+			write(model, outputConfig, writer);
+		}
+		catch (IOException e) {
+			// StringWriter does not throw IOExceptions
+			throw new UncheckedIOException(e);
+		}
+		finally {
+			long nanos = System.nanoTime() - start;
+			this.statistics.recordRender(nanos);
+			GenerationTrace.recordPhase(GenerationEvent.Phase.RENDERING, nanos);
+		}
+		return new JsCacheEntry(writer.toString());
+	}
+
+	/**
+	 * Renders the code directly into the writer, without caching it
+	 */
+	private void renderTo(ModelBean model, OutputConfig outputConfig, Writer writer)
+			throws IOException {
+		long start = System.nanoTime();
+		try {
+			write(model, outputConfig, writer);
+		}
+		finally {
+			long nanos = System.nanoTime() - start;
+			this.statistics.recordRender(nanos);
+			GenerationTrace.recordPhase(GenerationEvent.Phase.RENDERING, nanos);
+		}
+	}
+
+	private void fireGeneration(GenerationTrace trace, GenerationEvent.Operation operation,
+			String className, String modelName, OutputConfig outputConfig,
+			long outputSize) {
+		long durationNanos = trace.elapsedNanos();
+		long threshold = this.slowGenerationThresholdNanos;
+		boolean slow = threshold > 0 && durationNanos >= threshold;
+		GenerationEvent event = new GenerationEvent(operation, className, modelName,
+				outputConfig, trace.isCacheHit(), trace.isCoalesced(),
+				trace.isNotModified(), outputSize, durationNanos, trace.getPhaseNanos(),
+				slow);
+
+		for (GenerationListener listener : this.generationListeners) {
+			try {
+				listener.onGeneration(event);
+				if (slow) {
+					listener.onSlowGeneration(event);
+				}
+			}
+			catch (RuntimeException e) {
+				LogFactory.getLog(ModelGenerator.class).warn("Generation listener failed",
+						e);
+			}
+		}
+	}
+
+	private void write(ModelBean model, OutputConfig outputConfig, Writer out)
+			throws IOException {
+		ModelGenerator.write(model, outputConfig, this.objectWriters.get(outputConfig),
+				out);
+	}
+
+	/**
+	 * @see ModelGenerator#setConcurrentGenerationTimeout(Duration)
+	 */
+	public void setConcurrentGenerationTimeout(Duration timeout) {
+		Assert.notNull(timeout, "timeout must not be null");
+		Assert.isTrue(timeout.toMillis() > 0,
+				"timeout must be at least one millisecond");
+		this.concurrentGenerationTimeoutMillis = timeout.toMillis();
+	}
+
+	/**
+	 * Sets the duration from which on a call is reported to
+	 * {@link GenerationListener#onSlowGeneration(GenerationEvent)}.
+	 *
+	 * @param threshold the threshold, {@link Duration#ZERO} disables the reporting of
+	 * slow calls
+	 */
+	public void setSlowGenerationThreshold(Duration threshold) {
+		Assert.notNull(threshold, "threshold must not be null");
+		Assert.isTrue(!threshold.isNegative(), "threshold must not be negative");
+		this.slowGenerationThresholdNanos = threshold.toNanos();
+	}
+
+	/**
+	 * @see ModelGenerator#setModelCacheMaximumWeight(long)
+	 */
+	public void setModelCacheMaximumWeight(long maximumWeight) {
+		Assert.isTrue(maximumWeight >= 0, "maximumWeight must not be negative");
+		this.modelCacheMaximumWeight = maximumWeight;
+		this.modelCache.setMaximumWeight(maximumWeight);
+	}
+
+	/**
+	 * @see ModelGenerator#setJsCacheMaximumWeight(long)
+	 */
+	public void setJsCacheMaximumWeight(long maximumWeight) {
+		Assert.isTrue(maximumWeight >= 0, "maximumWeight must not be negative");
+		this.jsCacheMaximumWeight = maximumWeight;
+		this.jsCache.setMaximumWeight(maximumWeight);
+	}
+
+	/**
+	 * @see ModelGenerator#setCacheProvider(CacheProvider)
+	 */
+	public void setCacheProvider(CacheProvider cacheProvider) {
+		CacheProvider provider = cacheProvider != null ? cacheProvider
+				: WeightedCache.PROVIDER;
+		GeneratorCache<ModelCacheKey, ModelBean> oldModelCache = this.modelCache;
+		GeneratorCache<Object, JsCacheEntry> oldJsCache = this.jsCache;
+		this.modelCache = createModelCache(provider);
+		this.jsCache = createJsCache(provider);
+		oldModelCache.invalidateAll((key, model) -> true, RemovalCause.CLEARED);
+		oldJsCache.invalidateAll((key, entry) -> true, RemovalCause.CLEARED);
+	}
+
+	/**
+	 * @return statistics of the model cache
+	 */
+	public CacheStats getModelCacheStats() {
+		return this.modelCache.stats();
+	}
+
+	/**
+	 * @return statistics of the cache with the Javascript code of models and bundles
+	 */
+	public CacheStats getJsCacheStats() {
+		return this.jsCache.stats();
+	}
+
+	/**
+	 * @return cache statistics and introspection and render latencies of this engine
+	 */
+	public ModelGeneratorStatistics getStatistics() {
+		return this.statistics;
+	}
+
+	/**
+	 * Registers the {@link #getStatistics() statistics} of this engine as a platform
+	 * MBean with the object name
+	 * {@code ch.rasc.extclassgenerator:type=ModelGenerator,name=<name>}. An engine can be
+	 * registered only once at a time.
+	 *
+	 * @param name value of the name key, identifies the engine
+	 * @return the object name the MBean is registered with
+	 * @throws IllegalStateException if the registration fails, e.g. because another
+	 * MBean is already registered with the same name
+	 */
+	public synchronized ObjectName registerMBean(String name) {
+		Assert.hasText(name, "name must not be empty");
+		Assert.state(this.mbeanName == null, "MBean is already registered");
+		try {
+			ObjectName objectName = new ObjectName("ch.rasc.extclassgenerator",
+					new Hashtable<>(Map.of("type", "ModelGenerator", "name",
+							ObjectName.quote(name))));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this.statistics,
+					objectName);
+			this.mbeanName = objectName;
+			return objectName;
+		}
+		catch (JMException e) {
+			throw new IllegalStateException("Registering the MBean failed", e);
+		}
+	}
+
+	/**
+	 * Removes the MBean registered with {@link #registerMBean(String)}. Does nothing if
+	 * the engine is not registered.
+	 */
+	public synchronized void unregisterMBean() {
+		if (this.mbeanName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.mbeanName);
+		}
+		catch (InstanceNotFoundException e) {
+			// already unregistered by someone else
+		}
+		catch (JMException e) {
+			throw new IllegalStateException("Unregistering the MBean failed", e);
+		}
+		finally {
+			this.mbeanName = null;
+		}
+	}
+
+	private GeneratorCache<ModelCacheKey, ModelBean> createModelCache(
+			CacheProvider provider) {
+		return provider.createCache(new CacheSpec<>(CacheSpec.MODEL_CACHE,
+				this.modelCacheMaximumWeight, ModelGenerator::estimateWeight,
+				key -> this.pinnedClasses.contains(key.getClassToken()),
+				this::modelRemoved));
+	}
+
+	private GeneratorCache<Object, JsCacheEntry> createJsCache(CacheProvider provider) {
+		return provider.createCache(new CacheSpec<>(CacheSpec.JS_CACHE,
+				this.jsCacheMaximumWeight, JsCacheEntry::weight,
+				key -> key instanceof JsCacheKey jsKey && jsKey.getClassToken() != null
+						&& this.pinnedClasses.contains(jsKey.getClassToken()),
+				this::jsRemoved));
+	}
+
+	/**
+	 * @see ModelGenerator#pin(Class)
+	 */
+	public void pin(Class<?> clazz) {
+		Assert.notNull(clazz, "clazz must not be null");
+		this.pinnedClasses.add(ClassToken.of(clazz));
+	}
+
+	/**
+	 * @see ModelGenerator#unpin(Class)
+	 */
+	public void unpin(Class<?> clazz) {
+		Assert.notNull(clazz, "clazz must not be null");
+		this.pinnedClasses.remove(ClassToken.of(clazz));
+	}
+
+	/**
+	 * @return the number of models in the model cache
+	 */
+	int cachedModelCount() {
+		return (int) this.modelCache.stats().getEntryCount();
+	}
+
+	int cachedJsCount() {
+		return (int) this.jsCache.stats().getEntryCount();
+	}
+
+	/**
+	 * Clears the model and Javascript code caches
+	 */
+	public void clearCaches() {
+		this.modelCache.invalidateAll((key, model) -> true, RemovalCause.CLEARED);
+		this.jsCache.invalidateAll((key, entry) -> true, RemovalCause.CLEARED);
+	}
+
+	/**
+	 * @see ModelGenerator#invalidate(Class)
+	 */
+	public void invalidate(Class<?> clazz) {
+		Assert.notNull(clazz, "clazz must not be null");
+		ClassToken token = ClassToken.of(clazz);
+
+		this.modelCache.invalidateAll((key, model) -> key.getClassToken() == token,
+				RemovalCause.INVALIDATED);
+		this.jsCache.invalidateAll((key, entry) -> {
+			if (key instanceof JsCacheKey) {
+				return ((JsCacheKey) key).getClassToken() == token;
+			}
+			return entry.getMembers().contains(token);
+		}, RemovalCause.INVALIDATED);
+	}
+
+	/**
+	 * @see ModelGenerator#invalidate(String)
+	 */
+	public void invalidate(String modelName) {
+		Assert.notNull(modelName, "modelName must not be null");
+
+		this.modelCache.invalidateAll((key, model) -> modelName.equals(model.getName()),
+				RemovalCause.INVALIDATED);
+		this.jsCache.invalidateAll((key, entry) -> {
+			if (key instanceof JsCacheKey) {
+				return modelName.equals(((JsCacheKey) key).getModelName());
+			}
+			for (ClassToken token : entry.getMembers()) {
+				Class<?> clazz = token.getType();
+				if (clazz != null && modelName.equals(ModelGenerator.getModelName(clazz))) {
+					return true;
+				}
+			}
+			return false;
+		}, RemovalCause.INVALIDATED);
+	}
+
+	/**
+	 * @see ModelGenerator#invalidate(OutputConfig)
+	 */
+	public void invalidate(OutputConfig outputConfig) {
+		Assert.notNull(outputConfig, "outputConfig must not be null");
+		OutputConfig config = OutputConfig.canonical(outputConfig);
+
+		this.jsCache.invalidateAll((key, entry) -> {
+			if (key instanceof JsCacheKey) {
+				return ((JsCacheKey) key).getConfig() == config;
+			}
+			return ((BundleCacheKey) key).getConfig() == config;
+		}, RemovalCause.INVALIDATED);
+	}
+
+	/**
+	 * @see ModelGenerator#addCacheListener(CacheListener)
+	 */
+	public void addCacheListener(CacheListener listener) {
+		Assert.notNull(listener, "listener must not be null");
+		this.cacheListeners.add(listener);
+	}
+
+	/**
+	 * @see ModelGenerator#removeCacheListener(CacheListener)
+	 */
+	public void removeCacheListener(CacheListener listener) {
+		this.cacheListeners.remove(listener);
+	}
+
+	/**
+	 * @see ModelGenerator#addGenerationListener(GenerationListener)
+	 */
+	public void addGenerationListener(GenerationListener listener) {
+		Assert.notNull(listener, "listener must not be null");
+		this.generationListeners.add(listener);
+	}
+
+	/**
+	 * @see ModelGenerator#removeGenerationListener(GenerationListener)
+	 */
+	public void removeGenerationListener(GenerationListener listener) {
+		this.generationListeners.remove(listener);
+	}
+
+	private void modelRemoved(ModelCacheKey key, ModelBean model, RemovalCause cause) {
+		if (!this.cacheListeners.isEmpty()) {
+			fireCacheRemoval(new CacheRemovalEvent(CacheRemovalEvent.EntryType.MODEL,
+					cause, Collections.singletonList(key.getClassName()), model.getName(),
+					null));
+		}
+	}
+
+	private void jsRemoved(Object key, JsCacheEntry entry, RemovalCause cause) {
+		if (this.cacheListeners.isEmpty()) {
+			return;
+		}
+
+		if (key instanceof JsCacheKey) {
+			JsCacheKey jsKey = (JsCacheKey) key;
+			fireCacheRemoval(new CacheRemovalEvent(
+					CacheRemovalEvent.EntryType.JAVASCRIPT, cause,
+					Collections.emptyList(), jsKey.getModelName(), jsKey.getConfig()));
+		}
+		else {
+			List<String> classNames = new ArrayList<>(entry.getMembers().size());
+			for (ClassToken token : entry.getMembers()) {
+				classNames.add(token.getClassName());
+			}
+			fireCacheRemoval(new CacheRemovalEvent(CacheRemovalEvent.EntryType.BUNDLE,
+					cause, classNames, null, ((BundleCacheKey) key).getConfig()));
+		}
+	}
+
+	private void fireCacheRemoval(CacheRemovalEvent event) {
+		for (CacheListener listener : this.cacheListeners) {
+			try {
+				listener.onRemoval(event);
+			}
+			catch (RuntimeException e) {
+				LogFactory.getLog(ModelGenerator.class).warn("Cache listener failed", e);
+			}
+		}
+	}
+
+	/**
+	 * Builder for {@link ModelGeneratorEngine} instances
+	 */
+	public static final class Builder {
+
+		private CacheProvider cacheProvider;
+
+		private long modelCacheMaximumWeight = DEFAULT_MODEL_CACHE_MAXIMUM_WEIGHT;
+
+		private long jsCacheMaximumWeight = DEFAULT_JS_CACHE_MAXIMUM_WEIGHT;
+
+		private Duration concurrentGenerationTimeout = Duration.ofSeconds(30);
+
+		private Executor executor;
+
+		private int parallelism = Runtime.getRuntime().availableProcessors();
+
+		private Duration slowGenerationThreshold = Duration.ZERO;
+
+		Builder() {
+			// use ModelGeneratorEngine.builder()
+		}
+
+		/**
+		 * Provider of the model and Javascript code caches. Defaults to weighted caches
+		 * that evict the least frequently used entries.
+		 */
+		public Builder cacheProvider(CacheProvider cacheProvider) {
+			this.cacheProvider = cacheProvider;
+			return this;
+		}
+
+		/**
+		 * Maximum weight of the model cache in bytes. Defaults to 16 MB
+		 */
+		public Builder modelCacheMaximumWeight(long maximumWeight) {
+			Assert.isTrue(maximumWeight >= 0, "maximumWeight must not be negative");
+			this.modelCacheMaximumWeight = maximumWeight;
+			return this;
+		}
+
+		/**
+		 * Maximum weight of the Javascript code cache in bytes. Defaults to 64 MB
+		 */
+		public Builder jsCacheMaximumWeight(long maximumWeight) {
+			Assert.isTrue(maximumWeight >= 0, "maximumWeight must not be negative");
+			this.jsCacheMaximumWeight = maximumWeight;
+			return this;
+		}
+
+		/**
+		 * Maximum time a thread waits for a model that another thread generates. Must be
+		 * at least one millisecond. Defaults to 30 seconds
+		 */
+		public Builder concurrentGenerationTimeout(Duration timeout) {
+			Assert.notNull(timeout, "timeout must not be null");
+			Assert.isTrue(timeout.toMillis() > 0,
+					"timeout must be at least one millisecond");
+			this.concurrentGenerationTimeout = timeout;
+			return this;
+		}
+
+		/**
+		 * Calls that take at least this long are reported to
+		 * {@link GenerationListener#onSlowGeneration(GenerationEvent)}. Defaults to
+		 * {@link Duration#ZERO}, which disables the reporting of slow calls.
+		 */
+		public Builder slowGenerationThreshold(Duration threshold) {
+			Assert.notNull(threshold, "threshold must not be null");
+			Assert.isTrue(!threshold.isNegative(), "threshold must not be negative");
+			this.slowGenerationThreshold = threshold;
+			return this;
+		}
+
+		/**
+		 * Maximum number of classes that
+		 * {@link ModelGeneratorEngine#createModels(Collection, OutputConfig)}
+		 * introspects at the same time. Defaults to the number of available processors
+		 */
+		public Builder parallelism(int parallelism) {
+			Assert.isTrue(parallelism > 0, "parallelism must be greater than 0");
+			this.parallelism = parallelism;
+			return this;
+		}
+
+		/**
+		 * Executor for parallel work. Defaults to the common fork join pool
+		 */
+		public Builder executor(Executor executor) {
+			this.executor = executor;
+			return this;
+		}
+
+		public ModelGeneratorEngine build() {
+			return new ModelGeneratorEngine(this);
+		}
+	}
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.util.Assert;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Micrometer binder for a {@link ModelGeneratorEngine}. Requires micrometer-core on the
+ * classpath, the dependency is optional.
+ * <p>
+ * Registers these meters, all tagged with the provided tags:
+ * <ul>
+ * <li>{@code extclassgenerator.cache.size}, {@code extclassgenerator.cache.weighted.size}
+ * (bytes), {@code extclassgenerator.cache.gets} (tagged with {@code result} hit or miss),
+ * {@code extclassgenerator.cache.evictions} and {@code extclassgenerator.cache.hit.ratio}
+ * for both caches, tagged with {@code cache} model or js</li>
+ * <li>{@code extclassgenerator.introspection}: time spent introspecting classes per
+ * call</li>
+ * <li>{@code extclassgenerator.render}: time spent rendering Javascript code per call,
+ * tagged with {@code format}</li>
+ * <li>{@code extclassgenerator.calls}: duration of the {@code createModel},
+ * {@code generateJavascript} and {@code writeModel} calls, tagged with
+ * {@code operation}, {@code format} and {@code result} hit or miss</li>
+ * <li>{@code extclassgenerator.served}: bytes written by {@code writeModel}, tagged
+ * with {@code format}. 304 responses are not recorded.</li>
+ * </ul>
+ * The timers and the summary are fed by a {@link GenerationListener} that
+ * {@link #bindTo(MeterRegistry)} adds to the engine. Binding the same registry again
+ * does nothing. {@link #close()} removes the listeners again.
+ */
+public final class ModelGeneratorMetrics implements MeterBinder, AutoCloseable {
+
+	private final ModelGeneratorEngine engine;
+
+	private final Tags tags;
+
+	private final ConcurrentMap<MeterRegistry, GenerationListener> listeners =
+			new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a binder for the default engine, see
+	 * {@link ModelGenerator#getDefaultEngine()}
+	 */
+	public ModelGeneratorMetrics() {
+		this(ModelGenerator.getDefaultEngine(), Tags.empty());
+	}
+
+	public ModelGeneratorMetrics(ModelGeneratorEngine engine, Iterable<Tag> tags) {
+		Assert.notNull(engine, "engine must not be null");
+		this.engine = engine;
+		this.tags = Tags.of(tags);
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		this.listeners.computeIfAbsent(registry, r -> {
+			bindCache(r, "model", ModelGeneratorEngine::getModelCacheStats);
+			bindCache(r, "js", ModelGeneratorEngine::getJsCacheStats);
+
+			GenerationListener listener = new MetricsListener(r, this.tags);
+			this.engine.addGenerationListener(listener);
+			return listener;
+		});
+	}
+
+	private void bindCache(MeterRegistry registry, String cache,
+			Function<ModelGeneratorEngine, CacheStats> stats) {
+		Tags cacheTags = this.tags.and("cache", cache);
+
+		Gauge.builder("extclassgenerator.cache.size", this.engine,
+				engine -> stats.apply(engine).getEntryCount()).tags(cacheTags)
+				.description("Number of entries in the cache").register(registry);
+		Gauge.builder("extclassgenerator.cache.weighted.size", this.engine,
+				engine -> stats.apply(engine).getWeightedSize()).tags(cacheTags)
+				.baseUnit(BaseUnits.BYTES)
+				.description("Estimated memory used by the entries in the cache")
+				.register(registry);
+		FunctionCounter
+				.builder("extclassgenerator.cache.gets", this.engine,
+						engine -> stats.apply(engine).getHitCount())
+				.tags(cacheTags).tag("result", "hit")
+				.description("Number of lookups that found an entry").register(registry);
+		FunctionCounter
+				.builder("extclassgenerator.cache.gets", this.engine,
+						engine -> stats.apply(engine).getMissCount())
+				.tags(cacheTags).tag("result", "miss")
+				.description("Number of lookups that did not find an entry")
+				.register(registry);
+		FunctionCounter.builder("extclassgenerator.cache.evictions", this.engine,
+				engine -> stats.apply(engine).getEvictionCount()).tags(cacheTags)
+				.description("Number of entries evicted because of the size limit")
+				.register(registry);
+		Gauge.builder("extclassgenerator.cache.hit.ratio", this.engine, engine -> {
+			CacheStats snapshot = stats.apply(engine);
+			long requests = snapshot.getHitCount() + snapshot.getMissCount();
+			return requests == 0 ? Double.NaN
+					: (double) snapshot.getHitCount() / requests;
+		}).tags(cacheTags).description("Ratio of lookups that found an entry")
+				.register(registry);
+	}
+
+	/**
+	 * Removes the listeners added by {@link #bindTo(MeterRegistry)} from the engine. The
+	 * timers and the summary are not updated anymore, the cache meters still are.
+	 */
+	@Override
+	public void close() {
+		for (GenerationListener listener : this.listeners.values()) {
+			this.engine.removeGenerationListener(listener);
+		}
+		this.listeners.clear();
+	}
+
+	private static final class MetricsListener implements GenerationListener {
+
+		private final Timer introspection;
+
+		private final Map<OutputFormat, Timer> render = new EnumMap<>(
+				OutputFormat.class);
+
+		private final Map<OutputFormat, DistributionSummary> served = new EnumMap<>(
+				OutputFormat.class);
+
+		/**
+		 * One timer per operation, format and cache result, see {@link #callsIndex}
+		 */
+		private final Timer[] calls = new Timer[GenerationEvent.Operation.values().length
+				* OutputFormat.values().length * 2];
+
+		MetricsListener(MeterRegistry registry, Tags tags) {
+			for (GenerationEvent.Operation operation : GenerationEvent.Operation
+					.values()) {
+				for (OutputFormat format : OutputFormat.values()) {
+					for (boolean cacheHit : new boolean[] { true, false }) {
+						this.calls[callsIndex(operation, format, cacheHit)] = Timer
+								.builder("extclassgenerator.calls").tags(tags)
+								.tag("operation", operation.name())
+								.tag("format", format.name())
+								.tag("result", cacheHit ? "hit" : "miss")
+								.description("Duration of generator calls")
+								.register(registry);
+					}
+				}
+			}
+			this.introspection = Timer.builder("extclassgenerator.introspection")
+					.tags(tags).description("Time spent introspecting classes")
+					.register(registry);
+			for (OutputFormat format : OutputFormat.values()) {
+				this.render.put(format,
+						Timer.builder("extclassgenerator.render").tags(tags)
+								.tag("format", format.name())
+								.description("Time spent rendering Javascript code")
+								.register(registry));
+				this.served.put(format, DistributionSummary
+						.builder("extclassgenerator.served").tags(tags)
+						.tag("format", format.name()).baseUnit(BaseUnits.BYTES)
+						.description("Bytes written into responses").register(registry));
+			}
+		}
+
+		@Override
+		public void onGeneration(GenerationEvent event) {
+			OutputFormat format = event.getOutputConfig().getOutputFormat() != null
+					? event.getOutputConfig().getOutputFormat()
+					: OutputFormat.EXTJS4;
+
+			long introspectionNanos = event
+					.getPhaseNanos(GenerationEvent.Phase.INTROSPECTION);
+			if (introspectionNanos > 0) {
+				this.introspection.record(introspectionNanos, TimeUnit.NANOSECONDS);
+			}
+			long renderNanos = event.getPhaseNanos(GenerationEvent.Phase.RENDERING);
+			if (renderNanos > 0) {
+				this.render.get(format).record(renderNanos, TimeUnit.NANOSECONDS);
+			}
+			if (event.getOperation() == GenerationEvent.Operation.WRITE_MODEL
+					&& !event.isNotModified()) {
+				this.served.get(format).record(event.getOutputSize());
+			}
+
+			this.calls[callsIndex(event.getOperation(), format, event.isCacheHit())]
+					.record(event.getDurationNanos(), TimeUnit.NANOSECONDS);
+		}
+
+		private static int callsIndex(GenerationEvent.Operation operation,
+				OutputFormat format, boolean cacheHit) {
+			return (operation.ordinal() * OutputFormat.values().length
+					+ format.ordinal()) * 2 + (cacheHit ? 0 : 1);
+		}
+	}
+
+}
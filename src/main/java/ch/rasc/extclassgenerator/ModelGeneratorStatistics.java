@@ -0,0 +1,146 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics of a {@link ModelGeneratorEngine}: cache statistics and latency histograms
+ * of class introspection and Javascript rendering. All values are read live from the
+ * engine.
+ */
+public final class ModelGeneratorStatistics implements ModelGeneratorStatisticsMXBean {
+
+	private final ModelGeneratorEngine engine;
+
+	private final LatencyHistogram introspection = new LatencyHistogram();
+
+	private final LatencyHistogram render = new LatencyHistogram();
+
+	ModelGeneratorStatistics(ModelGeneratorEngine engine) {
+		this.engine = engine;
+	}
+
+	void recordIntrospection(long nanos) {
+		this.introspection.record(nanos);
+	}
+
+	void recordRender(long nanos) {
+		this.render.record(nanos);
+	}
+
+	@Override
+	public long getModelCacheHitCount() {
+		return this.engine.getModelCacheStats().getHitCount();
+	}
+
+	@Override
+	public long getModelCacheMissCount() {
+		return this.engine.getModelCacheStats().getMissCount();
+	}
+
+	@Override
+	public long getModelCacheEvictionCount() {
+		return this.engine.getModelCacheStats().getEvictionCount();
+	}
+
+	@Override
+	public long getModelCacheEntryCount() {
+		return this.engine.getModelCacheStats().getEntryCount();
+	}
+
+	@Override
+	public long getModelCacheEstimatedBytes() {
+		return this.engine.getModelCacheStats().getWeightedSize();
+	}
+
+	@Override
+	public long getJsCacheHitCount() {
+		return this.engine.getJsCacheStats().getHitCount();
+	}
+
+	@Override
+	public long getJsCacheMissCount() {
+		return this.engine.getJsCacheStats().getMissCount();
+	}
+
+	@Override
+	public long getJsCacheEvictionCount() {
+		return this.engine.getJsCacheStats().getEvictionCount();
+	}
+
+	@Override
+	public long getJsCacheEntryCount() {
+		return this.engine.getJsCacheStats().getEntryCount();
+	}
+
+	@Override
+	public long getJsCacheEstimatedBytes() {
+		return this.engine.getJsCacheStats().getWeightedSize();
+	}
+
+	@Override
+	public long getIntrospectionCount() {
+		return this.introspection.getCount();
+	}
+
+	@Override
+	public long getIntrospectionTotalTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(this.introspection.getTotalNanos());
+	}
+
+	@Override
+	public long getIntrospectionMaxTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(this.introspection.getMaxNanos());
+	}
+
+	@Override
+	public long[] getIntrospectionLatencyHistogram() {
+		return this.introspection.getBucketCounts();
+	}
+
+	@Override
+	public long getRenderCount() {
+		return this.render.getCount();
+	}
+
+	@Override
+	public long getRenderTotalTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(this.render.getTotalNanos());
+	}
+
+	@Override
+	public long getRenderMaxTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(this.render.getMaxNanos());
+	}
+
+	@Override
+	public long[] getRenderLatencyHistogram() {
+		return this.render.getBucketCounts();
+	}
+
+	@Override
+	public long[] getLatencyHistogramBoundsMillis() {
+		return LatencyHistogram.BUCKET_BOUNDS_MILLIS.clone();
+	}
+
+	@Override
+	public void resetTimings() {
+		this.introspection.reset();
+		this.render.reset();
+	}
+
+}
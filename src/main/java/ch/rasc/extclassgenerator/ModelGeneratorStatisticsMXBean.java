@@ -0,0 +1,100 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+/**
+ * Management interface of {@link ModelGeneratorStatistics}. Registered with
+ * {@link ModelGeneratorEngine#registerMBean(String)}.
+ */
+public interface ModelGeneratorStatisticsMXBean {
+
+	long getModelCacheHitCount();
+
+	/**
+	 * @return number of lookups that did not find a model, compare with
+	 * {@link #getIntrospectionCount()}
+	 */
+	long getModelCacheMissCount();
+
+	long getModelCacheEvictionCount();
+
+	long getModelCacheEntryCount();
+
+	/**
+	 * @return estimated memory used by the cached models in bytes
+	 */
+	long getModelCacheEstimatedBytes();
+
+	long getJsCacheHitCount();
+
+	/**
+	 * @return number of lookups that did not find Javascript code, compare with
+	 * {@link #getRenderCount()}
+	 */
+	long getJsCacheMissCount();
+
+	long getJsCacheEvictionCount();
+
+	long getJsCacheEntryCount();
+
+	/**
+	 * @return estimated memory used by the cached Javascript code in bytes
+	 */
+	long getJsCacheEstimatedBytes();
+
+	/**
+	 * @return number of classes introspected, a steadily growing value for the same set
+	 * of classes indicates that models are regenerated
+	 */
+	long getIntrospectionCount();
+
+	long getIntrospectionTotalTimeMillis();
+
+	long getIntrospectionMaxTimeMillis();
+
+	/**
+	 * @return number of introspections per latency bucket, see
+	 * {@link #getLatencyHistogramBoundsMillis()}
+	 */
+	long[] getIntrospectionLatencyHistogram();
+
+	/**
+	 * @return number of models rendered to Javascript code
+	 */
+	long getRenderCount();
+
+	long getRenderTotalTimeMillis();
+
+	long getRenderMaxTimeMillis();
+
+	/**
+	 * @return number of renderings per latency bucket, see
+	 * {@link #getLatencyHistogramBoundsMillis()}
+	 */
+	long[] getRenderLatencyHistogram();
+
+	/**
+	 * @return inclusive upper bounds of the histogram buckets in milliseconds. The
+	 * histograms contain one more bucket for all durations above the last bound.
+	 */
+	long[] getLatencyHistogramBoundsMillis();
+
+	/**
+	 * Resets the introspection and render timings. Cache statistics are not reset.
+	 */
+	void resetTimings();
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Index of the {@link Model} classes of a jar or class folder. The
+ * {@link ModelAnnotationProcessor} writes the binary names of all {@link Model}
+ * annotated types it processes into {@value #LOCATION}, one name per line. At runtime
+ * the indexes of all jars are read from the classpath, no classpath scanning is needed.
+ *
+ * @see ModelGeneratorEngine#warmUp(ClassLoader, java.util.Collection)
+ */
+public final class ModelIndex {
+
+	/**
+	 * Location of the index in a jar or class folder
+	 */
+	public static final String LOCATION = "META-INF/extclassgenerator.models";
+
+	private ModelIndex() {
+		// utility class
+	}
+
+	/**
+	 * Reads all indexes that the class loader finds and loads the listed classes. Classes
+	 * that cannot be loaded, e.g. because the index is stale, are skipped and logged.
+	 *
+	 * @param classLoader the class loader that reads the indexes and loads the classes,
+	 * null uses the default class loader
+	 * @return the model classes, duplicates are contained once
+	 */
+	public static List<Class<?>> load(ClassLoader classLoader) {
+		ClassLoader loader = classLoader != null ? classLoader
+				: ClassUtils.getDefaultClassLoader();
+		Assert.notNull(loader, "no class loader available");
+
+		List<Class<?>> classes = new ArrayList<>();
+		for (String className : readClassNames(loader)) {
+			try {
+				classes.add(ClassUtils.forName(className, loader));
+			}
+			catch (ClassNotFoundException | LinkageError e) {
+				LogFactory.getLog(ModelGenerator.class)
+						.warn("Ignoring model class " + className + " from " + LOCATION, e);
+			}
+		}
+		return classes;
+	}
+
+	static Set<String> readClassNames(ClassLoader loader) {
+		Set<String> classNames = new LinkedHashSet<>();
+		try {
+			Enumeration<URL> indexes = loader.getResources(LOCATION);
+			while (indexes.hasMoreElements()) {
+				URL index = indexes.nextElement();
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+						index.openStream(), ModelGenerator.UTF8_CHARSET))) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						line = line.trim();
+						if (!line.isEmpty() && !line.startsWith("#")) {
+							classNames.add(line);
+						}
+					}
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Reading " + LOCATION + " failed", e);
+		}
+		return classNames;
+	}
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import tools.jackson.core.SerializableString;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.core.io.CharacterEscapes;
+import tools.jackson.core.io.SerializedString;
+import tools.jackson.core.json.JsonFactory;
+import tools.jackson.core.json.JsonWriteFeature;
+import tools.jackson.core.util.DefaultIndenter;
+import tools.jackson.core.util.DefaultPrettyPrinter;
+import tools.jackson.databind.MapperFeature;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Registry of the {@link ObjectWriter}s used to serialize models. Every
+ * {@link ModelGeneratorEngine} owns one registry. There is one writer per
+ * combination of output format, API quoting, debug mode, quote character and line
+ * ending. Each writer is created the first time it is needed and then reused, so
+ * Jackson's serializer caches survive between calls. Writers are immutable and can be
+ * used concurrently. Writers never close the target they write to.
+ * <p>
+ * Quote character and line endings are handled by the generator itself: strings are
+ * written with the configured quote character and escaped accordingly, the pretty
+ * printer writes the configured line ending. The output is never rewritten afterwards.
+ * Raw values ({@code @JsonRawValue}) are written unchanged.
+ */
+final class ObjectWriters {
+
+	private static final int LINE_ENDINGS = LineEnding.values().length + 1;
+
+	private final AtomicReferenceArray<ObjectWriter> writers = new AtomicReferenceArray<>(
+			OutputFormat.values().length * 8 * LINE_ENDINGS);
+
+	/**
+	 * Returns the writer for the output format, API quoting, debug, quote and line ending
+	 * options of the provided config. The writer is configured with the
+	 * {@link JsonViews} class of the output format.
+	 */
+	ObjectWriter get(OutputConfig outputConfig) {
+		OutputFormat format = outputConfig.getOutputFormat() != null
+				? outputConfig.getOutputFormat()
+				: OutputFormat.EXTJS4;
+		boolean surroundApiWithQuotes = outputConfig.isSurroundApiWithQuotes();
+		boolean debug = outputConfig.isDebug();
+		boolean useSingleQuotes = outputConfig.isUseSingleQuotes();
+		// line endings only matter for the pretty printer
+		LineEnding lineEnding = debug ? outputConfig.getLineEnding() : null;
+
+		int index = format.ordinal() * 8 + (surroundApiWithQuotes ? 4 : 0)
+				+ (debug ? 2 : 0) + (useSingleQuotes ? 1 : 0);
+		index = index * LINE_ENDINGS + (lineEnding != null ? lineEnding.ordinal() + 1 : 0);
+
+		ObjectWriter writer = this.writers.get(index);
+		if (writer == null) {
+			writer = createWriter(format, surroundApiWithQuotes, debug, useSingleQuotes,
+					lineEnding);
+			if (!this.writers.compareAndSet(index, null, writer)) {
+				writer = this.writers.get(index);
+			}
+		}
+		return writer;
+	}
+
+	/**
+	 * Returns the line separator written for the provided line ending or null if the
+	 * default of the pretty printer is used.
+	 */
+	static String lineSeparator(LineEnding lineEnding) {
+		if (lineEnding == LineEnding.CRLF) {
+			return "\r\n";
+		}
+		if (lineEnding == LineEnding.LF) {
+			return "\n";
+		}
+		if (lineEnding == LineEnding.SYSTEM) {
+			return System.lineSeparator();
+		}
+		return null;
+	}
+
+	private static ObjectWriter createWriter(OutputFormat format,
+			boolean surroundApiWithQuotes, boolean debug, boolean useSingleQuotes,
+			LineEnding lineEnding) {
+
+		JsonFactory jsonFactory = JsonFactory.builder()
+				.quoteChar(useSingleQuotes ? '\'' : '"')
+				.characterEscapes(new JsCharacterEscapes(useSingleQuotes)).build();
+
+		JsonMapper.Builder mapperBuilder = JsonMapper.builder(jsonFactory)
+				.configure(MapperFeature.DEFAULT_VIEW_INCLUSION, true)
+				.configure(JsonWriteFeature.QUOTE_PROPERTY_NAMES, false)
+				.configure(StreamWriteFeature.AUTO_CLOSE_TARGET, false);
+
+		if (!surroundApiWithQuotes) {
+			if (format == OutputFormat.EXTJS5) {
+				mapperBuilder.addMixIn(ProxyObject.class,
+						ProxyObjectWithoutApiQuotesExtJs5Mixin.class);
+			}
+			else {
+				mapperBuilder.addMixIn(ProxyObject.class,
+						ProxyObjectWithoutApiQuotesMixin.class);
+			}
+			mapperBuilder.addMixIn(ApiObject.class, ApiObjectMixin.class);
+		}
+		else if (format != OutputFormat.EXTJS5) {
+			mapperBuilder.addMixIn(ProxyObject.class,
+					ProxyObjectWithApiQuotesMixin.class);
+		}
+
+		Class<?> jsonView = JsonViews.ExtJS4.class;
+		if (format == OutputFormat.TOUCH2) {
+			jsonView = JsonViews.Touch2.class;
+		}
+		else if (format == OutputFormat.EXTJS5) {
+			jsonView = JsonViews.ExtJS5.class;
+		}
+
+		ObjectMapper mapper = mapperBuilder.build();
+		if (!debug) {
+			return mapper.writerWithView(jsonView);
+		}
+
+		String lineSeparator = lineSeparator(lineEnding);
+		if (lineSeparator == null) {
+			return mapper.writerWithDefaultPrettyPrinter().withView(jsonView);
+		}
+		return mapper.writer()
+				.with(new DefaultPrettyPrinter().withObjectIndenter(
+						new DefaultIndenter("  ", lineSeparator)))
+				.withView(jsonView);
+	}
+
+	/**
+	 * Escapes the quote character that is used to delimit strings and the line and
+	 * paragraph separators (U+2028, U+2029) that are not allowed in JS string literals
+	 * of older engines. With single quotes double quotes are written without escaping.
+	 */
+	static final class JsCharacterEscapes extends CharacterEscapes {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final SerializableString LINE_SEPARATOR = new SerializedString(
+				"\\u2028");
+
+		private static final SerializableString PARAGRAPH_SEPARATOR = new SerializedString(
+				"\\u2029");
+
+		private final int[] asciiEscapes;
+
+		JsCharacterEscapes(boolean useSingleQuotes) {
+			this.asciiEscapes = standardAsciiEscapesForJSON();
+			if (useSingleQuotes) {
+				this.asciiEscapes['"'] = 0;
+				this.asciiEscapes['\''] = '\'';
+			}
+		}
+
+		@Override
+		public int[] getEscapeCodesForAscii() {
+			return this.asciiEscapes;
+		}
+
+		@Override
+		public SerializableString getEscapeSequence(int ch) {
+			if (ch == 0x2028) {
+				return LINE_SEPARATOR;
+			}
+			if (ch == 0x2029) {
+				return PARAGRAPH_SEPARATOR;
+			}
+			return null;
+		}
+	}
+
+}
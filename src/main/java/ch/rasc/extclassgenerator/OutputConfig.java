@@ -16,12 +16,30 @@
 package ch.rasc.extclassgenerator;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.util.Assert;
 
 /**
  * Class to configure the output of the {@link ModelGenerator}
+ * <p>
+ * Instances created with the constructor are mutable beans. {@link #builder()} and
+ * {@link #toImmutable()} return immutable instances. There is exactly one immutable
+ * instance per combination of options, so two immutable configs are equal only if they
+ * are the same instance. The caches of the {@link ModelGenerator} only store immutable
+ * configs, which makes the key comparison an identity check.
  */
 public class OutputConfig {
 
+	private static final int LINE_ENDINGS = LineEnding.values().length + 1;
+
+	private static final int FORMATS = OutputFormat.values().length + 1;
+
+	private static final int VALIDATIONS = IncludeValidation.values().length + 1;
+
+	private static final AtomicReferenceArray<OutputConfig> canonicalConfigs = new AtomicReferenceArray<>(
+			VALIDATIONS * FORMATS * 8 * LINE_ENDINGS);
+
 	private IncludeValidation includeValidation;
 
 	private OutputFormat outputFormat;
@@ -34,11 +52,92 @@ public class OutputConfig {
 
 	private LineEnding lineEnding;
 
+	private final boolean immutable;
+
+	private final int hash;
+
+	public OutputConfig() {
+		this.immutable = false;
+		this.hash = 0;
+	}
+
+	private OutputConfig(OutputConfig source) {
+		this.includeValidation = source.includeValidation;
+		this.outputFormat = source.outputFormat;
+		this.debug = source.debug;
+		this.useSingleQuotes = source.useSingleQuotes;
+		this.surroundApiWithQuotes = source.surroundApiWithQuotes;
+		this.lineEnding = source.lineEnding;
+		this.immutable = true;
+		this.hash = source.computeHashCode();
+	}
+
+	/**
+	 * @return a builder that creates immutable configs
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the immutable instance with the same options as this config. Returns this
+	 * if the config is already immutable. Changing this config afterwards does not
+	 * change the returned instance.
+	 */
+	public OutputConfig toImmutable() {
+		return canonical(this);
+	}
+
+	/**
+	 * @return true if the setters of this config throw an exception
+	 */
+	public boolean isImmutable() {
+		return this.immutable;
+	}
+
+	/**
+	 * Returns the one immutable instance with the options of the provided config. Does
+	 * not allocate once the instance exists.
+	 */
+	static OutputConfig canonical(OutputConfig outputConfig) {
+		if (outputConfig == null || outputConfig.immutable) {
+			return outputConfig;
+		}
+
+		OutputConfig config = canonicalConfigs.get(outputConfig.index());
+		if (config == null) {
+			// index of the copy, the source may be changed concurrently
+			OutputConfig copy = new OutputConfig(outputConfig);
+			int index = copy.index();
+			if (canonicalConfigs.compareAndSet(index, null, copy)) {
+				return copy;
+			}
+			config = canonicalConfigs.get(index);
+		}
+		return config;
+	}
+
+	private int index() {
+		int index = this.includeValidation != null ? this.includeValidation.ordinal() + 1
+				: 0;
+		index = index * FORMATS
+				+ (this.outputFormat != null ? this.outputFormat.ordinal() + 1 : 0);
+		index = index * 8 + (this.debug ? 4 : 0) + (this.useSingleQuotes ? 2 : 0)
+				+ (this.surroundApiWithQuotes ? 1 : 0);
+		return index * LINE_ENDINGS
+				+ (this.lineEnding != null ? this.lineEnding.ordinal() + 1 : 0);
+	}
+
+	private void checkMutable() {
+		Assert.state(!this.immutable, "OutputConfig is immutable");
+	}
+
 	public IncludeValidation getIncludeValidation() {
 		return this.includeValidation;
 	}
 
 	public void setIncludeValidation(IncludeValidation includeValidation) {
+		checkMutable();
 		this.includeValidation = includeValidation;
 	}
 
@@ -47,6 +146,7 @@ public class OutputConfig {
 	}
 
 	public void setOutputFormat(OutputFormat outputFormat) {
+		checkMutable();
 		this.outputFormat = outputFormat;
 	}
 
@@ -55,6 +155,7 @@ public class OutputConfig {
 	}
 
 	public void setDebug(boolean debug) {
+		checkMutable();
 		this.debug = debug;
 	}
 
@@ -63,6 +164,7 @@ public class OutputConfig {
 	}
 
 	public void setUseSingleQuotes(boolean useSingleQuotes) {
+		checkMutable();
 		this.useSingleQuotes = useSingleQuotes;
 	}
 
@@ -71,6 +173,7 @@ public class OutputConfig {
 	}
 
 	public void setSurroundApiWithQuotes(boolean surroundApiWithQuotes) {
+		checkMutable();
 		this.surroundApiWithQuotes = surroundApiWithQuotes;
 	}
 
@@ -79,13 +182,25 @@ public class OutputConfig {
 	}
 
 	public void setLineEnding(LineEnding lineEnding) {
+		checkMutable();
 		this.lineEnding = lineEnding;
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.debug, this.includeValidation, this.lineEnding,
-				this.outputFormat, this.surroundApiWithQuotes, this.useSingleQuotes);
+		if (this.immutable) {
+			return this.hash;
+		}
+		return computeHashCode();
+	}
+
+	private int computeHashCode() {
+		int result = 31 + Boolean.hashCode(this.debug);
+		result = 31 * result + Objects.hashCode(this.includeValidation);
+		result = 31 * result + Objects.hashCode(this.lineEnding);
+		result = 31 * result + Objects.hashCode(this.outputFormat);
+		result = 31 * result + Boolean.hashCode(this.surroundApiWithQuotes);
+		return 31 * result + Boolean.hashCode(this.useSingleQuotes);
 	}
 
 	@Override
@@ -108,4 +223,53 @@ public class OutputConfig {
 		return true;
 	}
 
+	/**
+	 * Builder for immutable {@link OutputConfig} instances.
+	 */
+	public static final class Builder {
+
+		private final OutputConfig config = new OutputConfig();
+
+		Builder() {
+			// use OutputConfig.builder()
+		}
+
+		public Builder includeValidation(IncludeValidation includeValidation) {
+			this.config.setIncludeValidation(includeValidation);
+			return this;
+		}
+
+		public Builder outputFormat(OutputFormat outputFormat) {
+			this.config.setOutputFormat(outputFormat);
+			return this;
+		}
+
+		public Builder debug(boolean debug) {
+			this.config.setDebug(debug);
+			return this;
+		}
+
+		public Builder useSingleQuotes(boolean useSingleQuotes) {
+			this.config.setUseSingleQuotes(useSingleQuotes);
+			return this;
+		}
+
+		public Builder surroundApiWithQuotes(boolean surroundApiWithQuotes) {
+			this.config.setSurroundApiWithQuotes(surroundApiWithQuotes);
+			return this;
+		}
+
+		public Builder lineEnding(LineEnding lineEnding) {
+			this.config.setLineEnding(lineEnding);
+			return this;
+		}
+
+		/**
+		 * @return the immutable config with the options of this builder
+		 */
+		public OutputConfig build() {
+			return canonical(this.config);
+		}
+	}
+
 }
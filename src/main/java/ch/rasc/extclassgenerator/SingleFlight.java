@@ -0,0 +1,100 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent computations for the same key. The first caller runs the
+ * computation, every other caller that arrives while it is running waits for the result
+ * of the first caller instead of starting its own computation.
+ */
+final class SingleFlight<K, V> {
+
+	private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * Runs the loader or waits for the result of a loader that is already running for the
+	 * same key. An exception thrown by the loader is propagated to all waiting callers.
+	 * A caller that waits marks its {@link GenerationTrace} as coalesced.
+	 *
+	 * @param key the key of the computation
+	 * @param loader computes the value
+	 * @param timeoutMillis maximum time in milliseconds a caller waits for the result of
+	 * another caller
+	 * @return the computed value
+	 * @throws IllegalStateException if waiting timed out or was interrupted
+	 */
+	V execute(K key, Supplier<V> loader, long timeoutMillis) {
+		CompletableFuture<V> future = new CompletableFuture<>();
+		CompletableFuture<V> running = this.inFlight.putIfAbsent(key, future);
+		if (running != null) {
+			GenerationTrace.recordCoalesced();
+			return await(key, running, timeoutMillis);
+		}
+
+		try {
+			V value = loader.get();
+			future.complete(value);
+			return value;
+		}
+		catch (RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		}
+		finally {
+			this.inFlight.remove(key, future);
+		}
+	}
+
+	private static <V> V await(Object key, CompletableFuture<V> running,
+			long timeoutMillis) {
+		try {
+			return running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			if (cause instanceof Error error) {
+				throw error;
+			}
+			throw new IllegalStateException(cause);
+		}
+		catch (TimeoutException e) {
+			throw new IllegalStateException("Timed out after " + timeoutMillis
+					+ " ms waiting for the concurrent generation of " + key, e);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"Interrupted while waiting for the concurrent generation of " + key,
+					e);
+		}
+	}
+
+	int size() {
+		return this.inFlight.size();
+	}
+
+}
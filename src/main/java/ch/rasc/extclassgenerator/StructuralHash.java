@@ -0,0 +1,177 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.Assert;
+
+import ch.rasc.extclassgenerator.association.AbstractAssociation;
+import ch.rasc.extclassgenerator.validation.AbstractValidation;
+
+/**
+ * 64-bit FNV-1a hash over the complete content of a {@link ModelBean}: all fields of the
+ * model, its fields, validations, associations, references and data options. Two models
+ * with the same hash generate the same code. The beans are walked with reflection, the
+ * field list of each class is read once and then cached.
+ * <p>
+ * The beans are mutable and hand out their nested beans, so there is no reliable change
+ * notification. The hash is computed again for every lookup, which is still much cheaper
+ * than rendering the model. It is only computed for models provided by the caller, the
+ * code of models introspected by the generator is keyed by their class.
+ */
+final class StructuralHash {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private static final int MAX_DEPTH = 32;
+
+	private static final ClassValue<Field[]> beanFields = new ClassValue<>() {
+		@Override
+		protected Field[] computeValue(Class<?> type) {
+			List<Field> fields = new ArrayList<>();
+			for (Class<?> c = type; c != null && c != Object.class; c = c
+					.getSuperclass()) {
+				for (Field field : c.getDeclaredFields()) {
+					if (!Modifier.isStatic(field.getModifiers())
+							&& !field.isSynthetic()) {
+						field.setAccessible(true);
+						fields.add(field);
+					}
+				}
+			}
+			return fields.toArray(new Field[0]);
+		}
+	};
+
+	private StructuralHash() {
+		// utility class
+	}
+
+	static long of(ModelBean model) {
+		return hashValue(FNV_OFFSET_BASIS, model, 0);
+	}
+
+	private static long hashValue(long hash, Object value, int depth) {
+		if (value == null) {
+			return mix(hash, 0);
+		}
+		if (value instanceof String) {
+			return hashString(mix(hash, 1), (String) value);
+		}
+		if (value instanceof Enum) {
+			return hashString(mix(hash, 2), ((Enum<?>) value).name());
+		}
+
+		Assert.state(depth < MAX_DEPTH, "model is nested too deeply or contains a cycle");
+		if (value instanceof Collection) {
+			Collection<?> collection = (Collection<?>) value;
+			long h = mixLong(mix(hash, 3), collection.size());
+			for (Object element : collection) {
+				h = hashValue(h, element, depth + 1);
+			}
+			return h;
+		}
+		if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			long h = mixLong(mix(hash, 4), map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				h = hashValue(h, entry.getKey(), depth + 1);
+				h = hashValue(h, entry.getValue(), depth + 1);
+			}
+			return h;
+		}
+		Class<?> type = value.getClass();
+		if (type.isArray()) {
+			int length = Array.getLength(value);
+			long h = mixLong(mix(hash, 5), length);
+			for (int i = 0; i < length; i++) {
+				h = hashValue(h, Array.get(value, i), depth + 1);
+			}
+			return h;
+		}
+		if (isBean(type)) {
+			long h = hashString(mix(hash, 6), type.getName());
+			for (Field field : beanFields.get(type)) {
+				h = hashField(h, field, value, depth + 1);
+			}
+			return h;
+		}
+
+		// numbers, booleans and other values with a value based hashCode
+		return mixLong(hashString(mix(hash, 7), type.getName()), value.hashCode());
+	}
+
+	private static long hashField(long hash, Field field, Object bean, int depth) {
+		try {
+			Class<?> type = field.getType();
+			if (type == boolean.class) {
+				return mix(hash, field.getBoolean(bean) ? 1 : 0);
+			}
+			if (type == int.class) {
+				return mixLong(hash, field.getInt(bean));
+			}
+			if (type == long.class) {
+				return mixLong(hash, field.getLong(bean));
+			}
+			if (type == double.class) {
+				return mixLong(hash, Double.doubleToLongBits(field.getDouble(bean)));
+			}
+			return hashValue(hash, field.get(bean), depth);
+		}
+		catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static boolean isBean(Class<?> type) {
+		return type.getName().startsWith("ch.rasc.extclassgenerator.")
+				|| AbstractValidation.class.isAssignableFrom(type)
+				|| AbstractAssociation.class.isAssignableFrom(type)
+				|| ModelFieldBean.class.isAssignableFrom(type);
+	}
+
+	private static long hashString(long hash, String value) {
+		int length = value.length();
+		long h = mixLong(hash, length);
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			h = mix(mix(h, c & 0xff), c >>> 8);
+		}
+		return h;
+	}
+
+	private static long mixLong(long hash, long value) {
+		long h = hash;
+		for (int i = 0; i < 8; i++) {
+			h = mix(h, (int) (value >>> (i * 8)) & 0xff);
+		}
+		return h;
+	}
+
+	private static long mix(long hash, int octet) {
+		return (hash ^ octet) * FNV_PRIME;
+	}
+
+}
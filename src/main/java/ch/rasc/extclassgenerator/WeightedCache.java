@@ -0,0 +1,408 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+import org.springframework.util.Assert;
+
+/**
+ * Cache with a maximum total weight. Each entry is weighted with the provided weigher
+ * (an estimate of its size in bytes). When the total weight exceeds the maximum, entries
+ * are evicted based on how often their keys were requested (TinyLFU style frequency
+ * sketch), ties are broken by evicting the least recently used entry. The victim is
+ * chosen from a sample of {@value #EVICTION_SAMPLE_SIZE} entries, so an eviction costs
+ * the same regardless of the size of the cache. A newly added entry is always part of
+ * the sample and competes with the existing entries, so a rarely requested entry does
+ * not displace a hot one. Entries whose key matches the pinned predicate are never
+ * evicted.
+ * <p>
+ * Reads do not lock. Adding and removing entries is guarded by one lock, which is never
+ * held while the removal listener is called.
+ * <p>
+ * The optional removal listener is called for every entry that is evicted, removed or
+ * cleared. It is not called when an entry is replaced by {@link #put(Object, Object)}.
+ */
+final class WeightedCache<K, V> implements GeneratorCache<K, V> {
+
+	/**
+	 * The default {@link CacheProvider}
+	 */
+	static final CacheProvider PROVIDER = new CacheProvider() {
+		@Override
+		public <K, V> GeneratorCache<K, V> createCache(CacheSpec<K, V> spec) {
+			return new WeightedCache<>(spec.getMaximumWeight(), spec.getWeigher(),
+					spec.getPinned(), spec.getRemovalListener());
+		}
+	};
+
+	static final int EVICTION_SAMPLE_SIZE = 16;
+
+	private final Map<K, Node<K, V>> data = new ConcurrentHashMap<>();
+
+	/**
+	 * All nodes in no particular order, the victims are sampled from this list. Each node
+	 * knows its position, so a node is removed in constant time by moving the last node
+	 * into its place. Guarded by {@link #lock}.
+	 */
+	private final List<Node<K, V>> nodes = new ArrayList<>();
+
+	private final ToLongFunction<? super V> weigher;
+
+	private final Predicate<? super K> pinned;
+
+	private final RemovalListener<? super K, ? super V> removalListener;
+
+	private final FrequencySketch sketch = new FrequencySketch();
+
+	private final AtomicLong weightedSize = new AtomicLong();
+
+	private final LongAdder hitCount = new LongAdder();
+
+	private final LongAdder missCount = new LongAdder();
+
+	private final LongAdder evictionCount = new LongAdder();
+
+	private final Object lock = new Object();
+
+	private volatile long maximumWeight;
+
+	WeightedCache(long maximumWeight, ToLongFunction<? super V> weigher,
+			Predicate<? super K> pinned) {
+		this(maximumWeight, weigher, pinned, null);
+	}
+
+	WeightedCache(long maximumWeight, ToLongFunction<? super V> weigher,
+			Predicate<? super K> pinned,
+			RemovalListener<? super K, ? super V> removalListener) {
+		this.weigher = weigher;
+		this.pinned = pinned;
+		this.removalListener = removalListener;
+		setMaximumWeight(maximumWeight);
+	}
+
+	@Override
+	public V get(K key) {
+		this.sketch.increment(key.hashCode());
+		Node<K, V> node = this.data.get(key);
+		if (node == null) {
+			this.missCount.increment();
+			return null;
+		}
+		this.hitCount.increment();
+		node.lastAccess = System.nanoTime();
+		return node.value;
+	}
+
+	/**
+	 * Not atomic, concurrent callers may compute the value more than once. The lookup is
+	 * not recorded in the statistics and the frequency sketch, the caller already
+	 * recorded it with {@link #get(Object)}.
+	 */
+	@Override
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		Node<K, V> node = this.data.get(key);
+		if (node != null) {
+			node.lastAccess = System.nanoTime();
+			return node.value;
+		}
+
+		V value = mappingFunction.apply(key);
+		if (value != null) {
+			put(key, value);
+		}
+		return value;
+	}
+
+	void put(K key, V value) {
+		Node<K, V> node = new Node<>(key, value,
+				Math.max(1, this.weigher.applyAsLong(value)));
+		List<Node<K, V>> evicted = null;
+		synchronized (this.lock) {
+			Node<K, V> old = this.data.put(key, node);
+			if (old != null) {
+				node.index = old.index;
+				this.nodes.set(old.index, node);
+				this.weightedSize.addAndGet(node.weight - old.weight);
+			}
+			else {
+				node.index = this.nodes.size();
+				this.nodes.add(node);
+				this.weightedSize.addAndGet(node.weight);
+			}
+
+			if (this.weightedSize.get() > this.maximumWeight) {
+				evicted = evict(node);
+			}
+		}
+		removed(evicted, RemovalCause.EVICTED);
+	}
+
+	@Override
+	public void invalidate(K key) {
+		Node<K, V> node = this.data.get(key);
+		if (node != null && remove(node)) {
+			removed(node, RemovalCause.INVALIDATED);
+		}
+	}
+
+	@Override
+	public void invalidateAll(BiPredicate<? super K, ? super V> filter,
+			RemovalCause cause) {
+		for (Node<K, V> node : this.data.values()) {
+			if (filter.test(node.key, node.value) && remove(node)) {
+				removed(node, cause);
+			}
+		}
+	}
+
+	void clear() {
+		invalidateAll((key, value) -> true, RemovalCause.CLEARED);
+	}
+
+	private boolean remove(Node<K, V> node) {
+		synchronized (this.lock) {
+			return unlink(node);
+		}
+	}
+
+	/**
+	 * Removes the node from the map and the node list. Must be called with the lock held.
+	 *
+	 * @return false if the node has already been removed or replaced
+	 */
+	private boolean unlink(Node<K, V> node) {
+		if (!this.data.remove(node.key, node)) {
+			return false;
+		}
+		Node<K, V> last = this.nodes.remove(this.nodes.size() - 1);
+		if (last != node) {
+			last.index = node.index;
+			this.nodes.set(node.index, last);
+		}
+		this.weightedSize.addAndGet(-node.weight);
+		return true;
+	}
+
+	private void removed(List<Node<K, V>> removedNodes, RemovalCause cause) {
+		if (removedNodes != null) {
+			for (Node<K, V> node : removedNodes) {
+				removed(node, cause);
+			}
+		}
+	}
+
+	private void removed(Node<K, V> node, RemovalCause cause) {
+		if (this.removalListener != null) {
+			this.removalListener.onRemoval(node.key, node.value, cause);
+		}
+	}
+
+	@Override
+	public CacheStats stats() {
+		return new CacheStats(this.hitCount.sum(), this.missCount.sum(),
+				this.evictionCount.sum(), this.data.size(), this.weightedSize.get());
+	}
+
+	int size() {
+		return this.data.size();
+	}
+
+	long weightedSize() {
+		return this.weightedSize.get();
+	}
+
+	long getMaximumWeight() {
+		return this.maximumWeight;
+	}
+
+	@Override
+	public void setMaximumWeight(long maximumWeight) {
+		Assert.isTrue(maximumWeight >= 0, "maximumWeight must not be negative");
+		List<Node<K, V>> evicted;
+		synchronized (this.lock) {
+			this.maximumWeight = maximumWeight;
+			evicted = evict(null);
+		}
+		removed(evicted, RemovalCause.EVICTED);
+	}
+
+	/**
+	 * Evicts entries until the total weight is below the maximum or only pinned entries
+	 * are left. Must be called with the lock held.
+	 *
+	 * @param candidate the newly added node or null
+	 * @return the evicted nodes or null
+	 */
+	private List<Node<K, V>> evict(Node<K, V> candidate) {
+		List<Node<K, V>> evicted = null;
+		Node<K, V> newNode = candidate;
+		while (this.weightedSize.get() > this.maximumWeight) {
+			Node<K, V> victim = selectVictim(newNode);
+			if (victim == null) {
+				// only pinned entries left
+				break;
+			}
+
+			unlink(victim);
+			this.evictionCount.increment();
+			if (evicted == null) {
+				evicted = new ArrayList<>(2);
+			}
+			evicted.add(victim);
+			if (victim == newNode) {
+				newNode = null;
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * Selects the least frequently used node from the candidate and a sample of
+	 * consecutive nodes starting at a random position. If the sample contains only
+	 * pinned nodes all nodes are scanned.
+	 */
+	private Node<K, V> selectVictim(Node<K, V> candidate) {
+		Node<K, V> victim = null;
+		if (candidate != null && !this.pinned.test(candidate.key)) {
+			victim = candidate;
+		}
+
+		int size = this.nodes.size();
+		if (size <= EVICTION_SAMPLE_SIZE) {
+			return leastFrequentlyUsed(victim, 0, size);
+		}
+		int start = ThreadLocalRandom.current().nextInt(size);
+		victim = leastFrequentlyUsed(victim, start, EVICTION_SAMPLE_SIZE);
+		if (victim == null) {
+			victim = leastFrequentlyUsed(null, 0, size);
+		}
+		return victim;
+	}
+
+	private Node<K, V> leastFrequentlyUsed(Node<K, V> initialVictim, int start,
+			int count) {
+		Node<K, V> victim = initialVictim;
+		int victimFrequency = victim != null ? this.sketch.frequency(victim.key.hashCode())
+				: Integer.MAX_VALUE;
+		int size = this.nodes.size();
+		for (int i = 0; i < count; i++) {
+			Node<K, V> node = this.nodes.get((start + i) % size);
+			if (node == victim || this.pinned.test(node.key)) {
+				continue;
+			}
+			int frequency = this.sketch.frequency(node.key.hashCode());
+			if (frequency < victimFrequency || frequency == victimFrequency
+					&& node.lastAccess < victim.lastAccess) {
+				victim = node;
+				victimFrequency = frequency;
+			}
+		}
+		return victim;
+	}
+
+	private static final class Node<K, V> {
+		final K key;
+
+		final V value;
+
+		final long weight;
+
+		volatile long lastAccess = System.nanoTime();
+
+		/**
+		 * Position in the node list, guarded by the lock of the cache
+		 */
+		int index;
+
+		Node(K key, V value, long weight) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * Count-Min sketch with four rows of 4-bit saturating counters. All counters are
+	 * halved after a fixed number of increments so that the frequencies reflect recent
+	 * popularity. Increments are not synchronized, a lost update only makes the estimate
+	 * slightly less accurate.
+	 */
+	static final class FrequencySketch {
+
+		private static final int WIDTH = 1024;
+
+		private static final int MAX_COUNT = 15;
+
+		private static final int SAMPLE_SIZE = 10 * WIDTH;
+
+		private static final int[] SEEDS = { 0x97cb3127, 0xbe2d5cf1, 0x2e0d6d4b,
+				0x85ebca6b };
+
+		private final byte[][] table = new byte[SEEDS.length][WIDTH];
+
+		private int additions;
+
+		void increment(int hashCode) {
+			boolean added = false;
+			for (int i = 0; i < SEEDS.length; i++) {
+				int index = index(hashCode, i);
+				if (this.table[i][index] < MAX_COUNT) {
+					this.table[i][index]++;
+					added = true;
+				}
+			}
+
+			if (added && ++this.additions >= SAMPLE_SIZE) {
+				reset();
+			}
+		}
+
+		int frequency(int hashCode) {
+			int frequency = MAX_COUNT;
+			for (int i = 0; i < SEEDS.length; i++) {
+				frequency = Math.min(frequency, this.table[i][index(hashCode, i)]);
+			}
+			return frequency;
+		}
+
+		private void reset() {
+			for (byte[] row : this.table) {
+				for (int i = 0; i < row.length; i++) {
+					row[i] = (byte) (row[i] >>> 1);
+				}
+			}
+			this.additions = this.additions >>> 1;
+		}
+
+		private static int index(int hashCode, int row) {
+			int h = hashCode * SEEDS[row];
+			h ^= h >>> 16;
+			return h & (WIDTH - 1);
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+public class BundleCacheKeyTest {
+
+	private static final ClassToken A = ClassToken.of(String.class);
+
+	private static final ClassToken B = ClassToken.of(Integer.class);
+
+	@Test
+	public void verifyEquals() {
+		EqualsVerifier.forClass(BundleCacheKey.class)
+				.withPrefabValues(ClassToken.class, ClassToken.of(String.class),
+						ClassToken.of(Integer.class))
+				.verify();
+	}
+
+	@Test
+	public void testPutAndGet() {
+		OutputConfig config = new OutputConfig();
+		config.setOutputFormat(OutputFormat.EXTJS4);
+		BundleCacheKey key1 = new BundleCacheKey(List.of(A, B), config, false);
+		BundleCacheKey key2 = new BundleCacheKey(List.of(B, A), config, false);
+
+		config = new OutputConfig();
+		config.setOutputFormat(OutputFormat.EXTJS5);
+		BundleCacheKey key3 = new BundleCacheKey(List.of(A, B), config, false);
+
+		config = new OutputConfig();
+		config.setOutputFormat(OutputFormat.EXTJS4);
+		BundleCacheKey key4 = new BundleCacheKey(List.of(A, B), config, false);
+
+		BundleCacheKey key5 = new BundleCacheKey(List.of(A, B), config, true);
+
+		Map<BundleCacheKey, String> map = new ConcurrentHashMap<>();
+		map.put(key1, "one");
+		map.put(key2, "two");
+		map.put(key3, "three");
+		map.put(key5, "five");
+
+		assertThat(map.get(key1)).isEqualTo("one");
+		assertThat(map.get(key2)).isEqualTo("two");
+		assertThat(map.get(key3)).isEqualTo("three");
+		assertThat(map.get(key4)).isEqualTo("one");
+		assertThat(map.get(key5)).isEqualTo("five");
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class ContentEncodingTest {
+
+	@Test
+	public void testNegotiate() {
+		assertThat(ContentEncoding.negotiate(null)).isEqualTo(ContentEncoding.IDENTITY);
+		assertThat(ContentEncoding.negotiate("")).isEqualTo(ContentEncoding.IDENTITY);
+		assertThat(ContentEncoding.negotiate("br")).isEqualTo(ContentEncoding.IDENTITY);
+		assertThat(ContentEncoding.negotiate("identity"))
+				.isEqualTo(ContentEncoding.IDENTITY);
+
+		assertThat(ContentEncoding.negotiate("gzip")).isEqualTo(ContentEncoding.GZIP);
+		assertThat(ContentEncoding.negotiate("x-gzip")).isEqualTo(ContentEncoding.GZIP);
+		assertThat(ContentEncoding.negotiate("deflate, gzip"))
+				.isEqualTo(ContentEncoding.GZIP);
+		assertThat(ContentEncoding.negotiate("*")).isEqualTo(ContentEncoding.GZIP);
+
+		assertThat(ContentEncoding.negotiate("deflate"))
+				.isEqualTo(ContentEncoding.DEFLATE);
+		assertThat(ContentEncoding.negotiate("gzip;q=0.2, deflate;q=0.8"))
+				.isEqualTo(ContentEncoding.DEFLATE);
+		assertThat(ContentEncoding.negotiate("gzip;q=0, *"))
+				.isEqualTo(ContentEncoding.DEFLATE);
+
+		assertThat(ContentEncoding.negotiate("gzip;q=0, deflate;q=0"))
+				.isEqualTo(ContentEncoding.IDENTITY);
+		assertThat(ContentEncoding.negotiate("gzip;q=abc"))
+				.isEqualTo(ContentEncoding.IDENTITY);
+	}
+
+	@Test
+	public void testEncodeIdentity() {
+		byte[] data = { 1, 2, 3 };
+		assertThat(ContentEncoding.IDENTITY.encode(data)).isSameAs(data);
+	}
+
+}
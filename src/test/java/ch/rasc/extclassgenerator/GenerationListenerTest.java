@@ -0,0 +1,138 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import ch.rasc.extclassgenerator.GenerationEvent.Operation;
+import ch.rasc.extclassgenerator.GenerationEvent.Phase;
+import ch.rasc.extclassgenerator.bean.Book;
+
+public class GenerationListenerTest {
+
+	private static final OutputConfig CONFIG = OutputConfig.builder()
+			.includeValidation(IncludeValidation.NONE).build();
+
+	@Test
+	public void testCreateModel() {
+		ModelGeneratorEngine engine = new ModelGeneratorEngine();
+		List<GenerationEvent> events = new ArrayList<>();
+		engine.addGenerationListener(events::add);
+
+		ModelBean model = engine.createModel(Book.class, CONFIG);
+		engine.createModel(Book.class, CONFIG);
+
+		assertThat(events).hasSize(2);
+		GenerationEvent miss = events.get(0);
+		assertThat(miss.getOperation()).isEqualTo(Operation.CREATE_MODEL);
+		assertThat(miss.getClassName()).isEqualTo(Book.class.getName());
+		assertThat(miss.getModelName()).isEqualTo(model.getName());
+		assertThat(miss.getOutputConfig()).isSameAs(CONFIG);
+		assertThat(miss.isCacheHit()).isFalse();
+		assertThat(miss.getOutputSize()).isEqualTo(-1);
+		assertThat(miss.getPhaseNanos(Phase.INTROSPECTION)).isPositive();
+		assertThat(miss.getPhaseNanos(Phase.RENDERING)).isZero();
+		assertThat(miss.getDurationNanos())
+				.isGreaterThanOrEqualTo(miss.getPhaseNanos(Phase.INTROSPECTION));
+		assertThat(miss.isSlow()).isFalse();
+
+		GenerationEvent hit = events.get(1);
+		assertThat(hit.isCacheHit()).isTrue();
+		assertThat(hit.getPhaseNanos(Phase.INTROSPECTION)).isZero();
+	}
+
+	@Test
+	public void testNestedCallsAreReportedOnce() throws IOException {
+		ModelGeneratorEngine engine = new ModelGeneratorEngine();
+		List<GenerationEvent> events = new ArrayList<>();
+		engine.addGenerationListener(events::add);
+
+		String code = engine.generateJavascript(Book.class, CONFIG);
+		assertThat(events).hasSize(1);
+		GenerationEvent event = events.get(0);
+		assertThat(event.getOperation()).isEqualTo(Operation.GENERATE_JAVASCRIPT);
+		assertThat(event.getOutputSize()).isEqualTo(code.length());
+		assertThat(event.getPhaseNanos(Phase.INTROSPECTION)).isPositive();
+		assertThat(event.getPhaseNanos(Phase.RENDERING)).isPositive();
+
+		ModelBean model = engine.createModel(Book.class, CONFIG);
+		engine.generateJavascript(model, CONFIG);
+		events.clear();
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", "gzip");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		engine.writeModel(request, response, model, CONFIG);
+		assertThat(events).hasSize(1);
+		event = events.get(0);
+		assertThat(event.getOperation()).isEqualTo(Operation.WRITE_MODEL);
+		assertThat(event.getClassName()).isNull();
+		assertThat(event.isCacheHit()).isTrue();
+		assertThat(event.getOutputSize())
+				.isEqualTo(response.getContentAsByteArray().length);
+		assertThat(event.getPhaseNanos(Phase.ENCODING)).isPositive();
+		assertThat(event.getPhaseNanos(Phase.WRITING)).isPositive();
+	}
+
+	@Test
+	public void testSlowGeneration() {
+		ModelGeneratorEngine engine = ModelGeneratorEngine.builder()
+				.slowGenerationThreshold(Duration.ofNanos(1)).build();
+		List<GenerationEvent> events = new ArrayList<>();
+		List<GenerationEvent> slowEvents = new ArrayList<>();
+		GenerationListener failingListener = event -> {
+			throw new IllegalStateException("ignored");
+		};
+		engine.addGenerationListener(failingListener);
+		engine.addGenerationListener(new GenerationListener() {
+			@Override
+			public void onGeneration(GenerationEvent event) {
+				events.add(event);
+			}
+
+			@Override
+			public void onSlowGeneration(GenerationEvent event) {
+				slowEvents.add(event);
+			}
+		});
+
+		engine.createModel(Book.class, CONFIG);
+		assertThat(events).hasSize(1);
+		assertThat(events.get(0).isSlow()).isTrue();
+		assertThat(slowEvents).containsExactly(events.get(0));
+
+		engine.setSlowGenerationThreshold(Duration.ofHours(1));
+		engine.createModel(Book.class, CONFIG);
+		assertThat(events).hasSize(2);
+		assertThat(events.get(1).isSlow()).isFalse();
+		assertThat(slowEvents).hasSize(1);
+
+		engine.removeGenerationListener(failingListener);
+		engine.setSlowGenerationThreshold(Duration.ZERO);
+		engine.createModel(Book.class, CONFIG);
+		assertThat(events).hasSize(3);
+		assertThat(slowEvents).hasSize(1);
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import ch.rasc.extclassgenerator.bean.Book;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class GeneratorEventsTest {
+
+	@Test
+	public void testEvents() throws Exception {
+		ModelGeneratorEngine engine = new ModelGeneratorEngine();
+		OutputConfig config = OutputConfig.builder()
+				.includeValidation(IncludeValidation.ALL)
+				.outputFormat(OutputFormat.EXTJS5).build();
+
+		List<RecordedEvent> events;
+		try (Recording recording = new Recording()) {
+			for (String name : new String[] { "CreateModel", "BeanInfo",
+					"AnnotationScan", "ValidationMapping", "Render", "Encode",
+					"Fingerprint", "Serve" }) {
+				recording.enable("ch.rasc.extclassgenerator." + name)
+						.withoutThreshold();
+			}
+			recording.start();
+
+			MockHttpServletRequest request = new MockHttpServletRequest();
+			request.addHeader("Accept-Encoding", "gzip");
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			engine.writeModel(request, response, Book.class, config);
+			engine.createModel(Book.class, config);
+
+			recording.stop();
+			Path file = Files.createTempFile("generator", ".jfr");
+			try {
+				recording.dump(file);
+				events = RecordingFile.readAllEvents(file);
+			}
+			finally {
+				Files.delete(file);
+			}
+		}
+
+		List<String> names = events.stream()
+				.map(event -> event.getEventType().getName()
+						.substring("ch.rasc.extclassgenerator.".length()))
+				.distinct().collect(Collectors.toList());
+		assertThat(names).contains("CreateModel", "BeanInfo", "AnnotationScan",
+				"Render", "Encode", "Fingerprint", "Serve");
+
+		List<RecordedEvent> createModel = byName(events, "CreateModel");
+		assertThat(createModel).hasSize(2);
+		assertThat(createModel).allMatch(
+				event -> Book.class.getName().equals(event.getString("className")));
+		assertThat(createModel).extracting(event -> event.getBoolean("cacheHit"))
+				.containsExactlyInAnyOrder(false, true);
+
+		RecordedEvent serve = byName(events, "Serve").get(0);
+		assertThat(serve.getString("className")).isEqualTo(Book.class.getName());
+		assertThat(serve.getString("outputFormat")).isEqualTo("EXTJS5");
+		assertThat(serve.getString("contentEncoding")).isEqualTo("gzip");
+		assertThat(serve.getBoolean("notModified")).isFalse();
+		assertThat(serve.getLong("size")).isPositive();
+
+		RecordedEvent render = byName(events, "Render").get(0);
+		assertThat(render.getBoolean("cacheHit")).isFalse();
+		assertThat(render.getLong("size")).isPositive();
+	}
+
+	@Test
+	public void testDefaultSettings() {
+		assertThat(setting(GeneratorEvents.AnnotationScan.class, "enabled"))
+				.isEqualTo("false");
+		assertThat(setting(GeneratorEvents.BeanInfo.class, "enabled")).isEqualTo("true");
+		assertThat(setting(GeneratorEvents.Serve.class, "threshold")).isEqualTo("10 ms");
+		assertThat(setting(GeneratorEvents.CreateModel.class, "threshold"))
+				.isEqualTo("10 ms");
+		assertThat(setting(GeneratorEvents.Encode.class, "threshold")).isEqualTo("0 ns");
+	}
+
+	private static String setting(Class<? extends Event> eventClass, String name) {
+		return EventType.getEventType(eventClass).getSettingDescriptors().stream()
+				.filter(setting -> setting.getName().equals(name)).findFirst()
+				.orElseThrow().getDefaultValue();
+	}
+
+	private static List<RecordedEvent> byName(List<RecordedEvent> events, String name) {
+		return events.stream().filter(event -> event.getEventType().getName()
+				.equals("ch.rasc.extclassgenerator." + name)).collect(Collectors.toList());
+	}
+
+}
@@ -28,7 +28,10 @@ public class JsCacheKeyTest {
 
 	@Test
 	public void verifyEquals() {
-		EqualsVerifier.forClass(JsCacheKey.class).verify();
+		EqualsVerifier.forClass(JsCacheKey.class)
+				.withPrefabValues(ClassToken.class, ClassToken.of(String.class),
+						ClassToken.of(Integer.class))
+				.verify();
 	}
 
 	@Test
@@ -28,13 +28,16 @@ public class ModelCacheKeyTest {
 
 	@Test
 	public void verifyEquals() {
-		EqualsVerifier.forClass(ModelCacheKey.class).verify();
+		EqualsVerifier.forClass(ModelCacheKey.class)
+				.withPrefabValues(ClassToken.class, ClassToken.of(String.class),
+						ClassToken.of(Integer.class))
+				.verify();
 	}
 
 	@Test
 	public void testPutAndGet() {
 		ModelCacheKey key1 = new ModelCacheKey(null, null);
-		ModelCacheKey key2 = new ModelCacheKey("name", null);
+		ModelCacheKey key2 = new ModelCacheKey(String.class, null);
 
 		OutputConfig outputConfig1 = new OutputConfig();
 		outputConfig1.setIncludeValidation(IncludeValidation.ALL);
@@ -42,11 +45,11 @@ public class ModelCacheKeyTest {
 
 		OutputConfig outputConfig2 = new OutputConfig();
 		outputConfig2.setIncludeValidation(IncludeValidation.BUILTIN);
-		ModelCacheKey key4 = new ModelCacheKey("name", outputConfig2);
+		ModelCacheKey key4 = new ModelCacheKey(String.class, outputConfig2);
 
 		OutputConfig outputConfig3 = new OutputConfig();
 		outputConfig3.setIncludeValidation(IncludeValidation.NONE);
-		ModelCacheKey key5 = new ModelCacheKey("name", outputConfig3);
+		ModelCacheKey key5 = new ModelCacheKey(String.class, outputConfig3);
 
 		Map<ModelCacheKey, String> map = new ConcurrentHashMap<>();
 		map.put(key1, "one");
@@ -60,4 +63,57 @@ public class ModelCacheKeyTest {
 		assertThat(map.get(key3)).isEqualTo("three");
 		assertThat(map.get(key4)).isEqualTo("four");
 	}
+
+	@Test
+	public void testRenderingOptionsShareKey() {
+		OutputConfig outputConfig1 = new OutputConfig();
+		outputConfig1.setIncludeValidation(IncludeValidation.ALL);
+		outputConfig1.setOutputFormat(OutputFormat.EXTJS4);
+
+		OutputConfig outputConfig2 = new OutputConfig();
+		outputConfig2.setIncludeValidation(IncludeValidation.ALL);
+		outputConfig2.setOutputFormat(OutputFormat.TOUCH2);
+		outputConfig2.setDebug(true);
+		outputConfig2.setUseSingleQuotes(true);
+		outputConfig2.setSurroundApiWithQuotes(true);
+		outputConfig2.setLineEnding(LineEnding.CRLF);
+
+		assertThat(new ModelCacheKey(String.class, outputConfig1))
+				.isEqualTo(new ModelCacheKey(String.class, outputConfig2));
+
+		OutputConfig outputConfig3 = new OutputConfig();
+		outputConfig3.setIncludeValidation(IncludeValidation.BUILTIN);
+		outputConfig3.setOutputFormat(OutputFormat.EXTJS4);
+		OutputConfig outputConfig4 = new OutputConfig();
+		outputConfig4.setIncludeValidation(IncludeValidation.BUILTIN);
+		outputConfig4.setOutputFormat(OutputFormat.TOUCH2);
+		OutputConfig outputConfig5 = new OutputConfig();
+		outputConfig5.setIncludeValidation(IncludeValidation.BUILTIN);
+		outputConfig5.setOutputFormat(OutputFormat.EXTJS5);
+
+		assertThat(new ModelCacheKey(String.class, outputConfig3))
+				.isEqualTo(new ModelCacheKey(String.class, outputConfig4));
+		assertThat(new ModelCacheKey(String.class, outputConfig3))
+				.isNotEqualTo(new ModelCacheKey(String.class, outputConfig5));
+	}
+
+	@Test
+	public void testKeysAreCachedPerClassAndConfig() {
+		OutputConfig outputConfig1 = new OutputConfig();
+		outputConfig1.setIncludeValidation(IncludeValidation.ALL);
+		OutputConfig outputConfig2 = new OutputConfig();
+		outputConfig2.setIncludeValidation(IncludeValidation.ALL);
+		OutputConfig config1 = OutputConfig.canonical(outputConfig1);
+		OutputConfig config2 = OutputConfig.canonical(outputConfig2);
+
+		ClassToken token = ClassToken.of(String.class);
+		assertThat(token.modelCacheKey(config1)).isSameAs(token.modelCacheKey(config2))
+				.isEqualTo(new ModelCacheKey(String.class, outputConfig1));
+		assertThat(token.jsCacheKey(config1)).isSameAs(token.jsCacheKey(config2));
+		assertThat(token.jsCacheKey(config1).getModelName())
+				.isEqualTo(String.class.getName());
+		assertThat(ClassToken.of(Integer.class).modelCacheKey(config1))
+				.isNotEqualTo(token.modelCacheKey(config1));
+	}
+
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import ch.rasc.extclassgenerator.bean.Address;
+import ch.rasc.extclassgenerator.bean.Author;
+import ch.rasc.extclassgenerator.bean.Book;
+import ch.rasc.extclassgenerator.bean.Car;
+import ch.rasc.extclassgenerator.bean.Employee;
+import ch.rasc.extclassgenerator.bean.Order;
+import ch.rasc.extclassgenerator.bean.Pos;
+import ch.rasc.extclassgenerator.bean.User;
+
+public class ModelGeneratorCacheProviderTest {
+
+	private final List<CacheSpec<?, ?>> specs = new ArrayList<>();
+
+	@BeforeEach
+	public void setProvider() {
+		ModelGenerator.setCacheProvider(new CacheProvider() {
+			@Override
+			public <K, V> GeneratorCache<K, V> createCache(CacheSpec<K, V> spec) {
+				ModelGeneratorCacheProviderTest.this.specs.add(spec);
+				return new MapCache<>(spec);
+			}
+		});
+	}
+
+	@AfterEach
+	public void resetProvider() {
+		ModelGenerator.setCacheProvider(null);
+	}
+
+	@Test
+	public void testProvider() {
+		assertThat(this.specs).extracting(CacheSpec::getName)
+				.containsExactly(CacheSpec.MODEL_CACHE, CacheSpec.JS_CACHE);
+		assertThat(this.specs).extracting(CacheSpec::getMaximumWeight)
+				.containsExactly(16L * 1024 * 1024, 64L * 1024 * 1024);
+
+		OutputConfig config = OutputConfig.builder()
+				.includeValidation(IncludeValidation.NONE)
+				.outputFormat(OutputFormat.EXTJS5).build();
+		String code = ModelGenerator.generateJavascript(Book.class, config);
+		assertThat(ModelGenerator.generateJavascript(Book.class, config)).isSameAs(code);
+
+		assertThat(ModelGenerator.getModelCacheStats().getEntryCount()).isEqualTo(1);
+		assertThat(ModelGenerator.getJsCacheStats().getEntryCount()).isEqualTo(1);
+		assertThat(ModelGenerator.getJsCacheStats().getHitCount()).isEqualTo(1);
+
+		ModelGenerator.invalidate(Book.class);
+		assertThat(ModelGenerator.getModelCacheStats().getEntryCount()).isZero();
+		assertThat(ModelGenerator.getJsCacheStats().getEntryCount()).isZero();
+	}
+
+	@Test
+	public void testResetProvider() {
+		OutputConfig config = OutputConfig.builder()
+				.includeValidation(IncludeValidation.NONE).build();
+		ModelGenerator.generateJavascript(Book.class, config);
+		assertThat(ModelGenerator.cachedModelCount()).isEqualTo(1);
+
+		ModelGenerator.setCacheProvider(null);
+		assertThat(ModelGenerator.cachedModelCount()).isZero();
+		ModelGenerator.generateJavascript(Book.class, config);
+		assertThat(ModelGenerator.cachedModelCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testWriteModels() throws IOException {
+		OutputConfig config = OutputConfig.builder()
+				.includeValidation(IncludeValidation.NONE)
+				.outputFormat(OutputFormat.EXTJS5).build();
+		List<Class<?>> classes = List.of(Address.class, Author.class, Book.class,
+				Car.class, Employee.class, Order.class, Pos.class, User.class);
+		StringBuilder expected = new StringBuilder();
+		for (Class<?> clazz : classes) {
+			if (expected.length() > 0) {
+				expected.append("\n");
+			}
+			expected.append(ModelGenerator.generateJavascript(clazz, config));
+		}
+		ModelGenerator.clearCaches();
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ModelGenerator.writeModels(new MockHttpServletRequest(), response, classes,
+				config);
+		assertThat(response.getContentAsString()).isEqualTo(expected.toString());
+
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModels(new MockHttpServletRequest(), response, classes,
+				config);
+		assertThat(response.getContentAsString()).isEqualTo(expected.toString());
+
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModelWithAssociations(new MockHttpServletRequest(),
+				response, Book.class, config);
+		assertThat(response.getContentAsString())
+				.isEqualTo(ModelGenerator.generateJavascript(Author.class, config) + "\n"
+						+ ModelGenerator.generateJavascript(Book.class, config));
+	}
+
+	/**
+	 * Like a {@link ConcurrentHashMap}, which only detects some recursive updates,
+	 * rejects every mapping function that accesses the cache.
+	 */
+	private static final class MapCache<K, V> implements GeneratorCache<K, V> {
+
+		private final Map<K, V> map = new ConcurrentHashMap<>();
+
+		private final CacheSpec<K, V> spec;
+
+		private final ThreadLocal<Boolean> computing = ThreadLocal
+				.withInitial(() -> Boolean.FALSE);
+
+		private long hits;
+
+		private long misses;
+
+		MapCache(CacheSpec<K, V> spec) {
+			this.spec = spec;
+		}
+
+		@Override
+		public synchronized V get(K key) {
+			V value = this.map.get(key);
+			if (value != null) {
+				this.hits++;
+			}
+			else {
+				this.misses++;
+			}
+			return value;
+		}
+
+		@Override
+		public V computeIfAbsent(K key,
+				Function<? super K, ? extends V> mappingFunction) {
+			return this.map.computeIfAbsent(key, k -> {
+				if (this.computing.get()) {
+					throw new IllegalStateException("Recursive update");
+				}
+				this.computing.set(Boolean.TRUE);
+				try {
+					return mappingFunction.apply(k);
+				}
+				finally {
+					this.computing.remove();
+				}
+			});
+		}
+
+		@Override
+		public void invalidate(K key) {
+			V value = this.map.remove(key);
+			if (value != null) {
+				this.spec.getRemovalListener().onRemoval(key, value,
+						RemovalCause.INVALIDATED);
+			}
+		}
+
+		@Override
+		public void invalidateAll(BiPredicate<? super K, ? super V> filter,
+				RemovalCause cause) {
+			this.map.forEach((key, value) -> {
+				if (filter.test(key, value) && this.map.remove(key, value)) {
+					this.spec.getRemovalListener().onRemoval(key, value, cause);
+				}
+			});
+		}
+
+		@Override
+		public synchronized CacheStats stats() {
+			return new CacheStats(this.hits, this.misses, 0, this.map.size(), 0);
+		}
+	}
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import ch.rasc.extclassgenerator.bean.Address;
+import ch.rasc.extclassgenerator.bean.Author;
+import ch.rasc.extclassgenerator.bean.Book;
+import ch.rasc.extclassgenerator.bean.Employee;
+import ch.rasc.extclassgenerator.bean.User;
+
+public class ModelGeneratorEngineTest {
+
+	private static final OutputConfig CONFIG = OutputConfig.builder()
+			.includeValidation(IncludeValidation.NONE).build();
+
+	@BeforeEach
+	public void clearCaches() {
+		ModelGenerator.clearCaches();
+	}
+
+	@Test
+	public void testEnginesHaveIsolatedCaches() {
+		ModelGeneratorEngine engine1 = new ModelGeneratorEngine();
+		ModelGeneratorEngine engine2 = new ModelGeneratorEngine();
+
+		String code = engine1.generateJavascript(Book.class, CONFIG);
+		assertThat(engine1.cachedModelCount()).isEqualTo(1);
+		assertThat(engine1.cachedJsCount()).isEqualTo(1);
+		assertThat(engine2.cachedModelCount()).isZero();
+		assertThat(ModelGenerator.cachedModelCount()).isZero();
+
+		assertThat(engine2.generateJavascript(Book.class, CONFIG)).isEqualTo(code)
+				.isNotSameAs(code);
+		assertThat(engine1.generateJavascript(Book.class, CONFIG)).isSameAs(code);
+
+		engine1.clearCaches();
+		assertThat(engine1.cachedModelCount()).isZero();
+		assertThat(engine2.cachedModelCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testCodeOfIntrospectedModelsIsKeyedByClass() {
+		ModelGeneratorEngine engine = new ModelGeneratorEngine();
+		String code = engine.generateJavascript(Book.class, CONFIG);
+
+		ModelBean model = engine.createModel(Book.class, CONFIG);
+		model.setPaging(true);
+		assertThat(engine.generateJavascript(Book.class, CONFIG)).isSameAs(code);
+		assertThat(engine.generateJavascript(model, CONFIG)).isNotEqualTo(code);
+		assertThat(engine.cachedJsCount()).isEqualTo(2);
+
+		engine.invalidate(Book.class);
+		assertThat(engine.cachedJsCount()).isEqualTo(1);
+		engine.invalidate(model.getName());
+		assertThat(engine.cachedJsCount()).isZero();
+		assertThat(engine.generateJavascript(Book.class, CONFIG)).isEqualTo(code);
+	}
+
+	@Test
+	public void testListenersArePerEngine() {
+		ModelGeneratorEngine engine = new ModelGeneratorEngine();
+		List<CacheRemovalEvent> events = new ArrayList<>();
+		engine.addCacheListener(events::add);
+
+		engine.createModel(Book.class, CONFIG);
+		ModelGenerator.createModel(Book.class, CONFIG);
+		ModelGenerator.invalidate(Book.class);
+		assertThat(events).isEmpty();
+
+		engine.invalidate(Book.class);
+		assertThat(events).extracting(CacheRemovalEvent::getEntryType)
+				.containsExactly(CacheRemovalEvent.EntryType.MODEL);
+	}
+
+	@Test
+	public void testStaticMethodsUseDefaultEngine() {
+		ModelGeneratorEngine engine = ModelGenerator.getDefaultEngine();
+		assertThat(ModelGenerator.getDefaultEngine()).isSameAs(engine);
+
+		ModelBean model = ModelGenerator.createModel(Book.class, CONFIG);
+		assertThat(engine.createModel(Book.class, CONFIG)).isSameAs(model);
+		assertThat(engine.cachedModelCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testConcurrentGenerationTimeoutMustBePositive() {
+		ModelGeneratorEngine.Builder builder = ModelGeneratorEngine.builder();
+		assertThatThrownBy(() -> builder.concurrentGenerationTimeout(Duration.ZERO))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(
+				() -> builder.concurrentGenerationTimeout(Duration.ofNanos(999_999)))
+						.isInstanceOf(IllegalArgumentException.class);
+
+		ModelGeneratorEngine engine = new ModelGeneratorEngine();
+		assertThatThrownBy(() -> engine.setConcurrentGenerationTimeout(Duration.ZERO))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(
+				() -> engine.setConcurrentGenerationTimeout(Duration.ofMillis(-1)))
+						.isInstanceOf(IllegalArgumentException.class);
+		engine.setConcurrentGenerationTimeout(Duration.ofMillis(1));
+	}
+
+	@Test
+	public void testBuilder() {
+		List<CacheSpec<?, ?>> specs = new ArrayList<>();
+		Executor executor = Runnable::run;
+		ModelGeneratorEngine engine = ModelGeneratorEngine.builder()
+				.modelCacheMaximumWeight(100_000).jsCacheMaximumWeight(0)
+				.concurrentGenerationTimeout(Duration.ofSeconds(1)).executor(executor)
+				.cacheProvider(new CacheProvider() {
+					@Override
+					public <K, V> GeneratorCache<K, V> createCache(CacheSpec<K, V> spec) {
+						specs.add(spec);
+						return WeightedCache.PROVIDER.createCache(spec);
+					}
+				}).build();
+
+		assertThat(engine.getExecutor()).isSameAs(executor);
+		assertThat(specs).extracting(CacheSpec::getMaximumWeight).containsExactly(100_000L,
+				0L);
+
+		engine.generateJavascript(Book.class, CONFIG);
+		assertThat(engine.cachedModelCount()).isEqualTo(1);
+		assertThat(engine.cachedJsCount()).isZero();
+	}
+
+	@Test
+	public void testCreateModels() {
+		AtomicInteger tasks = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			ModelGeneratorEngine engine = ModelGeneratorEngine.builder().parallelism(3)
+					.executor(task -> {
+						tasks.incrementAndGet();
+						pool.execute(task);
+					}).build();
+
+			List<Class<?>> classes = Arrays.asList(Book.class, Author.class, User.class,
+					Address.class, Book.class, Employee.class);
+			Map<Class<?>, ModelBean> models = engine.createModels(classes, CONFIG);
+
+			assertThat(models.keySet()).containsExactly(Book.class, Author.class,
+					User.class, Address.class, Employee.class);
+			assertThat(tasks.get()).isEqualTo(2);
+			assertThat(engine.cachedModelCount()).isEqualTo(5);
+			for (Map.Entry<Class<?>, ModelBean> entry : models.entrySet()) {
+				assertThat(engine.createModel(entry.getKey(), CONFIG))
+						.isSameAs(entry.getValue());
+			}
+
+			tasks.set(0);
+			assertThat(engine.createModels(classes, CONFIG, 1)).isEqualTo(models);
+			assertThat(tasks.get()).isZero();
+			assertThat(engine.createModels(Collections.emptyList(), CONFIG)).isEmpty();
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testCreateModelsWithStarvedExecutor() {
+		List<Runnable> queued = new ArrayList<>();
+		ModelGeneratorEngine engine = ModelGeneratorEngine.builder().parallelism(4)
+				.executor(queued::add).build();
+
+		List<Class<?>> classes = Arrays.asList(Book.class, Author.class, User.class);
+		assertThat(engine.createModels(classes, CONFIG)).containsOnlyKeys(classes);
+		assertThat(queued).hasSize(2);
+		assertThat(engine.cachedModelCount()).isEqualTo(3);
+
+		// tasks that start late find no work left
+		queued.forEach(Runnable::run);
+		assertThat(engine.cachedModelCount()).isEqualTo(3);
+	}
+
+	@Test
+	public void testCreateModelsFailure() {
+		ModelGeneratorEngine engine = ModelGeneratorEngine.builder()
+				.executor(task -> {
+					throw new RejectedExecutionException();
+				}).build();
+
+		assertThatThrownBy(() -> engine.createModels(Arrays.asList(Book.class, null),
+				CONFIG, 4)).isInstanceOf(IllegalArgumentException.class);
+		assertThat(engine.cachedModelCount()).isEqualTo(1);
+		assertThat(ModelGenerator.createModels(Arrays.asList(Book.class), CONFIG))
+				.containsOnlyKeys(Book.class);
+	}
+
+	@Test
+	public void testDefaultExecutor() {
+		assertThat(new ModelGeneratorEngine().getExecutor())
+				.isSameAs(ForkJoinPool.commonPool());
+	}
+
+}
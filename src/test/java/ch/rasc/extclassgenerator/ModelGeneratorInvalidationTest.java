@@ -0,0 +1,213 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import ch.rasc.extclassgenerator.CacheRemovalEvent.EntryType;
+import ch.rasc.extclassgenerator.bean.Author;
+import ch.rasc.extclassgenerator.bean.Book;
+
+public class ModelGeneratorInvalidationTest {
+
+	private final List<CacheRemovalEvent> events = new CopyOnWriteArrayList<>();
+
+	private final CacheListener listener = this.events::add;
+
+	@BeforeEach
+	public void clearCaches() {
+		ModelGenerator.clearCaches();
+		ModelGenerator.addCacheListener(this.listener);
+	}
+
+	@AfterEach
+	public void removeListener() {
+		ModelGenerator.removeCacheListener(this.listener);
+	}
+
+	private static OutputConfig outputConfig(OutputFormat format) {
+		return OutputConfig.builder().includeValidation(IncludeValidation.NONE)
+				.outputFormat(format).build();
+	}
+
+	private static void fillCaches() throws IOException {
+		for (OutputFormat format : new OutputFormat[] { OutputFormat.EXTJS4,
+				OutputFormat.EXTJS5 }) {
+			ModelGenerator.generateJavascript(Book.class, outputConfig(format));
+			ModelGenerator.generateJavascript(Author.class, outputConfig(format));
+		}
+		ModelGenerator.writeModels(new MockHttpServletRequest(),
+				new MockHttpServletResponse(), List.of(Book.class, Author.class),
+				outputConfig(OutputFormat.EXTJS4));
+		assertThat(ModelGenerator.cachedModelCount()).isEqualTo(2);
+		assertThat(ModelGenerator.cachedJsCount()).isEqualTo(5);
+	}
+
+	@Test
+	public void testInvalidateClass() throws IOException {
+		fillCaches();
+		ModelGenerator.invalidate(Book.class);
+
+		assertThat(ModelGenerator.cachedModelCount()).isEqualTo(1);
+		assertThat(ModelGenerator.cachedJsCount()).isEqualTo(2);
+		assertThat(this.events).hasSize(4)
+				.allMatch(e -> e.getCause() == RemovalCause.INVALIDATED);
+		assertThat(this.events).filteredOn(e -> e.getEntryType() == EntryType.MODEL)
+				.singleElement().satisfies(e -> {
+					assertThat(e.getClassNames()).containsExactly(Book.class.getName());
+					assertThat(e.getModelName()).isEqualTo("MyApp.Book");
+					assertThat(e.getOutputConfig()).isNull();
+				});
+		assertThat(this.events)
+				.filteredOn(e -> e.getEntryType() == EntryType.JAVASCRIPT)
+				.extracting(CacheRemovalEvent::getOutputConfig).containsExactlyInAnyOrder(
+						outputConfig(OutputFormat.EXTJS4), outputConfig(OutputFormat.EXTJS5));
+		assertThat(this.events).filteredOn(e -> e.getEntryType() == EntryType.BUNDLE)
+				.singleElement().satisfies(e -> {
+					assertThat(e.getClassNames()).containsExactly(Book.class.getName(),
+							Author.class.getName());
+					assertThat(e.getModelName()).isNull();
+				});
+	}
+
+	@Test
+	public void testInvalidateModelName() throws IOException {
+		fillCaches();
+		ModelGenerator.invalidate("MyApp.Author");
+
+		assertThat(ModelGenerator.cachedModelCount()).isEqualTo(1);
+		assertThat(ModelGenerator.cachedJsCount()).isEqualTo(2);
+		assertThat(this.events).hasSize(4);
+
+		ModelBean model = new ModelBean();
+		model.setName("App.Custom");
+		ModelGenerator.generateJavascript(model, outputConfig(OutputFormat.EXTJS4));
+		assertThat(ModelGenerator.cachedJsCount()).isEqualTo(3);
+		ModelGenerator.invalidate("App.Custom");
+		assertThat(ModelGenerator.cachedJsCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void testInvalidateOutputConfig() throws IOException {
+		fillCaches();
+
+		OutputConfig config = new OutputConfig();
+		config.setIncludeValidation(IncludeValidation.NONE);
+		config.setOutputFormat(OutputFormat.EXTJS4);
+		ModelGenerator.invalidate(config);
+
+		assertThat(ModelGenerator.cachedModelCount()).isEqualTo(2);
+		assertThat(ModelGenerator.cachedJsCount()).isEqualTo(2);
+		assertThat(this.events).hasSize(3).allMatch(
+				e -> e.getOutputConfig() == outputConfig(OutputFormat.EXTJS4));
+	}
+
+	@Test
+	public void testClearAndEvictionEvents() throws IOException {
+		fillCaches();
+		ModelGenerator.clearCaches();
+		assertThat(this.events).hasSize(7)
+				.allMatch(e -> e.getCause() == RemovalCause.CLEARED);
+
+		this.events.clear();
+		try {
+			ModelGenerator.setJsCacheMaximumWeight(0);
+			ModelGenerator.generateJavascript(Book.class,
+					outputConfig(OutputFormat.EXTJS4));
+			assertThat(this.events).singleElement().satisfies(e -> {
+				assertThat(e.getEntryType()).isEqualTo(EntryType.JAVASCRIPT);
+				assertThat(e.getCause()).isEqualTo(RemovalCause.EVICTED);
+				assertThat(e.getModelName()).isEqualTo("MyApp.Book");
+			});
+		}
+		finally {
+			ModelGenerator.setJsCacheMaximumWeight(64L * 1024 * 1024);
+		}
+	}
+
+	@Test
+	public void testInvalidateAssociationBundleMember() throws IOException {
+		OutputConfig config = outputConfig(OutputFormat.EXTJS4);
+		ModelGenerator.writeModelWithAssociations(new MockHttpServletRequest(),
+				new MockHttpServletResponse(), Book.class, config);
+		assertThat(ModelGenerator.cachedJsCount()).isEqualTo(3);
+
+		ModelGenerator.invalidate(Author.class);
+		assertThat(ModelGenerator.cachedJsCount()).isEqualTo(1);
+		assertThat(this.events).filteredOn(e -> e.getEntryType() == EntryType.BUNDLE)
+				.singleElement().satisfies(e -> assertThat(e.getClassNames())
+						.containsExactly(Author.class.getName(), Book.class.getName()));
+
+		ModelGenerator.writeModelWithAssociations(new MockHttpServletRequest(),
+				new MockHttpServletResponse(), Book.class, config);
+		assertThat(ModelGenerator.cachedJsCount()).isEqualTo(3);
+		ModelGenerator.invalidate("MyApp.Author");
+		assertThat(ModelGenerator.cachedJsCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testInvalidateClassKeepsModelBeanCode() throws IOException {
+		ModelBean model = new ModelBean();
+		model.setName("MyApp.Book");
+		ModelGenerator.generateJavascript(model, outputConfig(OutputFormat.EXTJS4));
+		ModelGenerator.generateJavascript(Book.class, outputConfig(OutputFormat.EXTJS4));
+		assertThat(ModelGenerator.cachedJsCount()).isEqualTo(2);
+
+		ModelGenerator.invalidate(Book.class);
+		assertThat(ModelGenerator.cachedJsCount()).isEqualTo(1);
+		ModelGenerator.invalidate("MyApp.Book");
+		assertThat(ModelGenerator.cachedJsCount()).isZero();
+	}
+
+	@Test
+	public void testAssociationBundleEvent() throws IOException {
+		ModelGenerator.writeModelWithAssociations(new MockHttpServletRequest(),
+				new MockHttpServletResponse(), Book.class,
+				outputConfig(OutputFormat.EXTJS4));
+		ModelGenerator.clearCaches();
+
+		assertThat(this.events).filteredOn(e -> e.getEntryType() == EntryType.BUNDLE)
+				.singleElement().satisfies(e -> assertThat(e.getClassNames())
+						.containsExactly(Author.class.getName(), Book.class.getName()));
+	}
+
+	@Test
+	public void testFailingListener() throws IOException {
+		CacheListener failing = event -> {
+			throw new IllegalStateException("failing listener");
+		};
+		ModelGenerator.addCacheListener(failing);
+		try {
+			fillCaches();
+			ModelGenerator.invalidate(Book.class);
+			assertThat(this.events).hasSize(4);
+		}
+		finally {
+			ModelGenerator.removeCacheListener(failing);
+		}
+	}
+
+}
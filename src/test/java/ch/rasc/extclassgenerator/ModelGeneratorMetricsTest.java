@@ -0,0 +1,115 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import ch.rasc.extclassgenerator.bean.Book;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ModelGeneratorMetricsTest {
+
+	private static final OutputConfig CONFIG = OutputConfig.builder()
+			.includeValidation(IncludeValidation.NONE)
+			.outputFormat(OutputFormat.EXTJS5).build();
+
+	@Test
+	public void testMetrics() throws IOException {
+		ModelGeneratorEngine engine = new ModelGeneratorEngine();
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		try (ModelGeneratorMetrics metrics = new ModelGeneratorMetrics(engine,
+				Tags.of("app", "test"))) {
+			metrics.bindTo(registry);
+			AtomicInteger registrations = new AtomicInteger();
+			registry.config().meterFilter(new MeterFilter() {
+				@Override
+				public Meter.Id map(Meter.Id id) {
+					registrations.incrementAndGet();
+					return id;
+				}
+			});
+			metrics.bindTo(registry);
+			assertThat(registrations.get()).isZero();
+
+			engine.generateJavascript(Book.class, CONFIG);
+			engine.generateJavascript(Book.class, CONFIG);
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			engine.writeModel(new MockHttpServletRequest(), response, Book.class,
+					CONFIG);
+
+			assertThat(registry.get("extclassgenerator.cache.size").tag("cache", "model")
+					.tag("app", "test").gauge().value()).isEqualTo(1);
+			assertThat(registry.get("extclassgenerator.cache.weighted.size")
+					.tag("cache", "js").gauge().value()).isPositive();
+			assertThat(registry.get("extclassgenerator.cache.gets").tag("cache", "js")
+					.tag("result", "hit").functionCounter().count()).isEqualTo(2);
+			assertThat(registry.get("extclassgenerator.cache.evictions")
+					.tag("cache", "model").functionCounter().count()).isZero();
+			assertThat(registry.get("extclassgenerator.cache.hit.ratio")
+					.tag("cache", "js").gauge().value()).isBetween(0.0, 1.0);
+
+			assertThat(registry.get("extclassgenerator.introspection").timer().count())
+					.isEqualTo(1);
+			assertThat(registry.get("extclassgenerator.render").tag("format", "EXTJS5")
+					.timer().count()).isEqualTo(1);
+			assertThat(registry.get("extclassgenerator.served").tag("format", "EXTJS5")
+					.summary().totalAmount())
+							.isEqualTo(response.getContentAsByteArray().length);
+			assertThat(registry.get("extclassgenerator.calls")
+					.tag("operation", "GENERATE_JAVASCRIPT").tag("format", "EXTJS5")
+					.tag("result", "miss").timer().count()).isEqualTo(1);
+			assertThat(registry.get("extclassgenerator.calls")
+					.tag("operation", "GENERATE_JAVASCRIPT").tag("format", "EXTJS5")
+					.tag("result", "hit").timer().count()).isEqualTo(1);
+			assertThat(registry.get("extclassgenerator.calls")
+					.tag("operation", "WRITE_MODEL").tag("format", "EXTJS5")
+					.tag("result", "hit").timer().count()).isEqualTo(1);
+
+			MockHttpServletRequest request = new MockHttpServletRequest();
+			request.addHeader("If-None-Match", response.getHeader("ETag"));
+			MockHttpServletResponse notModified = new MockHttpServletResponse();
+			engine.writeModel(request, notModified, Book.class, CONFIG);
+			assertThat(notModified.getStatus()).isEqualTo(304);
+			DistributionSummary served = registry.get("extclassgenerator.served")
+					.tag("format", "EXTJS5").summary();
+			assertThat(served.count()).isEqualTo(1);
+			assertThat(served.totalAmount())
+					.isEqualTo(response.getContentAsByteArray().length);
+			assertThat(registry.get("extclassgenerator.calls")
+					.tag("operation", "WRITE_MODEL").tag("format", "EXTJS5")
+					.tag("result", "hit").timer().count()).isEqualTo(2);
+		}
+
+		engine.clearCaches();
+		engine.generateJavascript(Book.class, CONFIG);
+		assertThat(registry.get("extclassgenerator.introspection").timer().count())
+				.isEqualTo(1);
+		assertThat(registry.get("extclassgenerator.cache.size").tag("cache", "model")
+				.gauge().value()).isEqualTo(1);
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import ch.rasc.extclassgenerator.bean.Book;
+
+public class ModelGeneratorStatisticsTest {
+
+	private static final OutputConfig CONFIG = OutputConfig.builder()
+			.includeValidation(IncludeValidation.NONE).build();
+
+	@Test
+	public void testStatistics() {
+		ModelGeneratorEngine engine = new ModelGeneratorEngine();
+		ModelGeneratorStatistics statistics = engine.getStatistics();
+
+		engine.generateJavascript(Book.class, CONFIG);
+		assertThat(statistics.getModelCacheMissCount()).isEqualTo(1);
+		assertThat(statistics.getModelCacheHitCount()).isZero();
+		assertThat(statistics.getJsCacheMissCount()).isEqualTo(1);
+		assertThat(statistics.getJsCacheHitCount()).isZero();
+
+		engine.generateJavascript(Book.class, CONFIG);
+		assertThat(statistics.getModelCacheMissCount()).isEqualTo(1);
+		assertThat(statistics.getModelCacheHitCount()).isEqualTo(1);
+		assertThat(statistics.getJsCacheMissCount()).isEqualTo(1);
+		assertThat(statistics.getModelCacheEntryCount()).isEqualTo(1);
+		assertThat(statistics.getModelCacheEstimatedBytes()).isPositive();
+		assertThat(statistics.getJsCacheHitCount()).isEqualTo(1);
+		assertThat(statistics.getJsCacheEntryCount()).isEqualTo(1);
+		assertThat(statistics.getJsCacheEstimatedBytes()).isPositive();
+
+		assertThat(statistics.getIntrospectionCount()).isEqualTo(1);
+		assertThat(statistics.getRenderCount()).isEqualTo(1);
+		assertThat(Arrays.stream(statistics.getIntrospectionLatencyHistogram()).sum())
+				.isEqualTo(1);
+		assertThat(statistics.getRenderLatencyHistogram())
+				.hasSize(statistics.getLatencyHistogramBoundsMillis().length + 1);
+
+		statistics.resetTimings();
+		assertThat(statistics.getIntrospectionCount()).isZero();
+		assertThat(statistics.getRenderMaxTimeMillis()).isZero();
+		assertThat(statistics.getModelCacheHitCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void testHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(TimeUnit.MICROSECONDS.toNanos(500));
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(7));
+		histogram.record(TimeUnit.SECONDS.toNanos(10));
+
+		long[] counts = histogram.getBucketCounts();
+		assertThat(counts[0]).isEqualTo(2);
+		assertThat(counts[3]).isEqualTo(1);
+		assertThat(counts[counts.length - 1]).isEqualTo(1);
+		assertThat(histogram.getCount()).isEqualTo(4);
+		assertThat(histogram.getMaxNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(10));
+	}
+
+	@Test
+	public void testMBean() throws Exception {
+		ModelGeneratorEngine engine = new ModelGeneratorEngine();
+		engine.createModel(Book.class, CONFIG);
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = engine.registerMBean("statisticsTest");
+		try {
+			assertThat(name.getKeyProperty("type")).isEqualTo("ModelGenerator");
+			assertThat(server.isRegistered(name)).isTrue();
+			assertThat(server.getAttribute(name, "IntrospectionCount")).isEqualTo(1L);
+			assertThat(server.getAttribute(name, "ModelCacheEntryCount")).isEqualTo(1L);
+
+			assertThatThrownBy(() -> engine.registerMBean("statisticsTest"))
+					.isInstanceOf(IllegalStateException.class);
+			assertThatThrownBy(
+					() -> new ModelGeneratorEngine().registerMBean("statisticsTest"))
+							.isInstanceOf(IllegalStateException.class);
+		}
+		finally {
+			engine.unregisterMBean();
+		}
+		assertThat(server.isRegistered(name)).isFalse();
+		engine.unregisterMBean();
+	}
+
+	@Test
+	public void testRegisterDefaultEngine() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = ModelGenerator.registerMBean();
+		try {
+			assertThat(name.getKeyProperty("name")).isEqualTo("\"default\"");
+			assertThat(server.isRegistered(name)).isTrue();
+			ModelGenerator.createModel(Book.class, CONFIG);
+			assertThat((Long) server.getAttribute(name, "ModelCacheEntryCount"))
+					.isPositive();
+			assertThatThrownBy(ModelGenerator::registerMBean)
+					.isInstanceOf(IllegalStateException.class);
+		}
+		finally {
+			ModelGenerator.unregisterMBean();
+		}
+		assertThat(server.isRegistered(name)).isFalse();
+	}
+
+}
@@ -17,19 +17,38 @@ package ch.rasc.extclassgenerator;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.beans.Introspector;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.CachedIntrospectionResults;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ReflectionUtils;
 
 import ch.rasc.extclassgenerator.association.AbstractAssociation;
 import ch.rasc.extclassgenerator.association.BelongsToAssociation;
 import ch.rasc.extclassgenerator.association.HasManyAssociation;
 import ch.rasc.extclassgenerator.association.HasOneAssociation;
+import ch.rasc.extclassgenerator.bean.BeanWithValidation;
+import ch.rasc.extclassgenerator.bean.Book;
+import ch.rasc.extclassgenerator.validation.EmailValidation;
+import ch.rasc.extclassgenerator.validation.FormatValidation;
+import ch.rasc.extclassgenerator.validation.PresenceValidation;
 
 public class ModelGeneratorTest {
 
@@ -621,4 +640,307 @@ public class ModelGeneratorTest {
 		assertThat(code).isEqualTo(
 				"Ext.define(\"App.User\",{extend:\"Ext.data.Model\",config:{fields:[{name:\"id\",type:\"int\"},{name:\"name\",type:\"string\"}],proxy:{type:\"direct\",directFn:\"read\",reader:{rootProperty:\"records\",messageProperty:\"mp\"},writer:{type:\"deepjson\"}}}});");
 	}
+
+	@Test
+	public void testModelSharedAcrossRenderingOptions() {
+		OutputConfig extjs4 = new OutputConfig();
+		extjs4.setOutputFormat(OutputFormat.EXTJS4);
+		extjs4.setIncludeValidation(IncludeValidation.ALL);
+
+		OutputConfig extjs5 = new OutputConfig();
+		extjs5.setOutputFormat(OutputFormat.EXTJS5);
+		extjs5.setIncludeValidation(IncludeValidation.ALL);
+		extjs5.setDebug(true);
+		extjs5.setUseSingleQuotes(true);
+		extjs5.setLineEnding(LineEnding.CRLF);
+
+		ModelBean model = ModelGenerator.createModel(Book.class, extjs4);
+		assertThat(ModelGenerator.createModel(Book.class, extjs5)).isSameAs(model);
+
+		OutputConfig builtin = new OutputConfig();
+		builtin.setOutputFormat(OutputFormat.EXTJS5);
+		builtin.setIncludeValidation(IncludeValidation.BUILTIN);
+		assertThat(ModelGenerator.createModel(Book.class, builtin)).isNotSameAs(model);
+
+		String extjs4Code = ModelGenerator.generateJavascript(model, extjs4);
+		assertThat(ModelGenerator.generateJavascript(model, extjs5))
+				.contains("'integer'");
+
+		ModelGenerator.clearCaches();
+		assertThat(ModelGenerator.generateJavascript(model, extjs4))
+				.isEqualTo(extjs4Code).contains("type:\"int\"");
+	}
+
+	@Test
+	public void testRenderingDoesNotModifyModel() throws Exception {
+		OutputConfig extjs5 = new OutputConfig();
+		extjs5.setOutputFormat(OutputFormat.EXTJS5);
+		extjs5.setIncludeValidation(IncludeValidation.ALL);
+
+		OutputConfig extjs4 = new OutputConfig();
+		extjs4.setOutputFormat(OutputFormat.EXTJS4);
+		extjs4.setIncludeValidation(IncludeValidation.ALL);
+
+		ModelBean model = ModelGenerator.createModel(BeanWithValidation.class, extjs5);
+		String extjs5Code = ModelGenerator.generateJavascript(model, extjs5);
+		String extjs4Code = ModelGenerator.generateJavascript(model, extjs4);
+		assertThat(extjs5Code).contains("validators");
+		assertThat(extjs4Code).doesNotContain("validators");
+
+		for (ModelFieldBean field : model.getFields().values()) {
+			assertThat(field.getValidators()).isNull();
+			assertThat(field.getType()).isNotIn("integer", "number");
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				OutputConfig config = i % 2 == 0 ? extjs5 : extjs4;
+				String expected = i % 2 == 0 ? extjs5Code : extjs4Code;
+				results.add(executor.submit(() -> {
+					ModelGenerator.clearCaches();
+					return expected.equals(ModelGenerator.generateJavascript(model,
+							config));
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertThat(result.get(10, TimeUnit.SECONDS)).isTrue();
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testGenerateJavascriptStreaming() throws IOException {
+		ModelBean model = ModelGenerator.createModel(BeanWithValidation.class,
+				IncludeValidation.ALL);
+
+		for (OutputFormat format : OutputFormat.values()) {
+			for (LineEnding lineEnding : new LineEnding[] { null, LineEnding.CRLF,
+					LineEnding.LF }) {
+				OutputConfig config = new OutputConfig();
+				config.setOutputFormat(format);
+				config.setIncludeValidation(IncludeValidation.ALL);
+				config.setDebug(lineEnding != null);
+				config.setUseSingleQuotes(lineEnding == LineEnding.LF);
+				config.setLineEnding(lineEnding);
+
+				ModelGenerator.clearCaches();
+				StringWriter writer = new StringWriter();
+				ModelGenerator.generateJavascript(model, config, writer);
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				ModelGenerator.generateJavascript(model, config, out);
+
+				String expected = ModelGenerator.generateJavascript(model, config);
+				assertThat(writer.toString()).isEqualTo(expected);
+				assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(expected);
+
+				writer = new StringWriter();
+				ModelGenerator.generateJavascript(model, config, writer);
+				out = new ByteArrayOutputStream();
+				ModelGenerator.generateJavascript(model, config, out);
+				assertThat(writer.toString()).isEqualTo(expected);
+				assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(expected);
+			}
+		}
+	}
+
+	@Test
+	public void testSingleQuotesAndLineEndings() {
+		ModelBean model = new ModelBean();
+		model.setName("App.User");
+		ModelFieldBean nameField = new ModelFieldBean("name", ModelType.STRING);
+		nameField.setMapping("user's \"name\"");
+		model.addField(nameField);
+		model.addValidation(new FormatValidation("name", "^[\"a-z]+$"));
+
+		OutputConfig config = new OutputConfig();
+		config.setOutputFormat(OutputFormat.EXTJS4);
+		config.setUseSingleQuotes(true);
+		assertThat(ModelGenerator.generateJavascript(model, config)).isEqualTo(
+				"Ext.define('App.User',{extend:'Ext.data.Model',fields:[{name:'name',type:'string',mapping:'user\\'s \"name\"'}],validations:[{type:'format',field:'name',matcher:/^[\"a-z]+$/}]});");
+
+		config.setUseSingleQuotes(false);
+		assertThat(ModelGenerator.generateJavascript(model, config)).isEqualTo(
+				"Ext.define(\"App.User\",{extend:\"Ext.data.Model\",fields:[{name:\"name\",type:\"string\",mapping:\"user's \\\"name\\\"\"}],validations:[{type:\"format\",field:\"name\",matcher:/^[\"a-z]+$/}]});");
+
+		ModelGenerator.clearCaches();
+		nameField.setMapping("a\u2028b");
+		assertThat(ModelGenerator.generateJavascript(model, config))
+				.contains("mapping:\"a\\u2028b\"");
+
+		config.setDebug(true);
+		config.setLineEnding(LineEnding.CRLF);
+		String code = ModelGenerator.generateJavascript(model, config);
+		assertThat(code).contains("\r\n").doesNotContainPattern("[^\r]\n");
+
+		config.setLineEnding(LineEnding.LF);
+		code = ModelGenerator.generateJavascript(model, config);
+		assertThat(code).contains("\n").doesNotContain("\r");
+	}
+
+	private static ModelBean createOrderModel() {
+		ModelBean model = new ModelBean();
+		model.setName("App.Order");
+		model.setIdentifier("uuid");
+		model.setReadMethod("orderService.read");
+		model.addField(new ModelFieldBean("id", ModelType.STRING));
+		model.addField(new ModelFieldBean("email", ModelType.STRING));
+		model.addAssociation(new HasManyAssociation("App.Pos"));
+		model.addAssociation(new BelongsToAssociation("App.Customer"));
+		model.addAssociation(new HasOneAssociation("App.Address"));
+		model.addAssociation(new HasManyAssociation("App.Order"));
+		model.addValidation(new EmailValidation("email"));
+		model.addValidation(new PresenceValidation("id"));
+		return model;
+	}
+
+	@Test
+	public void testDeterministicOutput() {
+		OutputConfig config = new OutputConfig();
+		config.setOutputFormat(OutputFormat.EXTJS5);
+
+		String code = ModelGenerator.generateJavascript(createOrderModel(), config);
+		assertThat(code).isEqualTo(
+				"Ext.define(\"App.Order\",{extend:\"Ext.data.Model\",uses:[\"App.Address\",\"App.Customer\",\"App.Pos\"],requires:[\"Ext.data.identifier.Uuid\",\"Ext.data.proxy.Direct\",\"Ext.data.validator.Email\",\"Ext.data.validator.Presence\"],identifier:\"uuid\",fields:[{name:\"id\",type:\"string\",validators:[{type:\"presence\"}]},{name:\"email\",type:\"string\",validators:[{type:\"email\"}]}],associations:[{type:\"hasMany\",model:\"App.Pos\"},{type:\"belongsTo\",model:\"App.Customer\"},{type:\"hasOne\",model:\"App.Address\"},{type:\"hasMany\",model:\"App.Order\"}],proxy:{type:\"direct\",directFn:orderService.read}});");
+
+		ModelGenerator.clearCaches();
+		byte[] expected = code.getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < 10; i++) {
+			assertThat(ModelGenerator.generateJavascript(createOrderModel(), config)
+					.getBytes(StandardCharsets.UTF_8)).isEqualTo(expected);
+			ModelGenerator.clearCaches();
+		}
+	}
+
+	@Test
+	public void testChangedModelIsGeneratedAgain() {
+		ModelBean model = new ModelBean();
+		model.setName("App.User");
+		model.addField(new ModelFieldBean("id", ModelType.INTEGER));
+
+		String code = ModelGenerator.generateJavascript(model, OutputFormat.EXTJS4,
+				false);
+		assertThat(code).isEqualTo(
+				"Ext.define(\"App.User\",{extend:\"Ext.data.Model\",fields:[{name:\"id\",type:\"int\"}]});");
+
+		model.getField("id").setModelType(ModelType.STRING);
+		code = ModelGenerator.generateJavascript(model, OutputFormat.EXTJS4, false);
+		assertThat(code).isEqualTo(
+				"Ext.define(\"App.User\",{extend:\"Ext.data.Model\",fields:[{name:\"id\",type:\"string\"}]});");
+
+		model.setIdProperty("id");
+		code = ModelGenerator.generateJavascript(model, OutputFormat.EXTJS4, false);
+		assertThat(code).isEqualTo(
+				"Ext.define(\"App.User\",{extend:\"Ext.data.Model\",fields:[{name:\"id\",type:\"string\"}]});");
+
+		model.setIdProperty("userId");
+		code = ModelGenerator.generateJavascript(model, OutputFormat.EXTJS4, false);
+		assertThat(code).isEqualTo(
+				"Ext.define(\"App.User\",{extend:\"Ext.data.Model\",idProperty:\"userId\",fields:[{name:\"id\",type:\"string\"}],proxy:{type:\"direct\",idParam:\"userId\"}});");
+	}
+
+	@Test
+	public void testClassesFromDifferentClassLoaders() throws Exception {
+		OutputConfig config = new OutputConfig();
+		config.setIncludeValidation(IncludeValidation.NONE);
+
+		Class<?> copy = loadCopy(Book.class);
+		assertThat(copy.getName()).isEqualTo(Book.class.getName());
+
+		ModelBean model = ModelGenerator.createModel(Book.class, config);
+		ModelBean copyModel = ModelGenerator.createModel(copy, config);
+		assertThat(copyModel).isNotSameAs(model);
+		assertThat(ModelGenerator.cachedModelCount()).isEqualTo(2);
+		assertThat(ModelGenerator.createModel(Book.class, config)).isSameAs(model);
+		assertThat(ModelGenerator.createModel(copy, config)).isSameAs(copyModel);
+	}
+
+	@Test
+	public void testPinIsPerClassLoader() throws Exception {
+		OutputConfig config = new OutputConfig();
+		config.setIncludeValidation(IncludeValidation.NONE);
+		Class<?> copy = loadCopy(Book.class);
+
+		ModelGeneratorEngine engine = ModelGeneratorEngine.builder()
+				.modelCacheMaximumWeight(0).jsCacheMaximumWeight(0).build();
+		engine.pin(Book.class);
+		engine.generateJavascript(Book.class, config);
+		engine.generateJavascript(copy, config);
+		assertThat(engine.cachedModelCount()).isEqualTo(1);
+		assertThat(engine.cachedJsCount()).isEqualTo(1);
+		assertThat(engine.createModel(Book.class, config))
+				.isSameAs(engine.createModel(Book.class, config));
+
+		engine.unpin(Book.class);
+		engine.setModelCacheMaximumWeight(0);
+		engine.setJsCacheMaximumWeight(0);
+		assertThat(engine.cachedModelCount()).isZero();
+		assertThat(engine.cachedJsCount()).isZero();
+	}
+
+	@Test
+	public void testRemovesModelsOfUnloadedClasses() throws Exception {
+		OutputConfig config = new OutputConfig();
+		config.setIncludeValidation(IncludeValidation.NONE);
+
+		WeakReference<Class<?>> copyReference = createModelOfCopy(config);
+		assertThat(ModelGenerator.cachedModelCount()).isEqualTo(1);
+
+		for (int i = 0; i < 50 && copyReference.get() != null; i++) {
+			System.gc();
+			TimeUnit.MILLISECONDS.sleep(20);
+		}
+		assertThat(copyReference.get()).isNull();
+
+		ModelGenerator.createModel(Book.class, config);
+		assertThat(ModelGenerator.cachedModelCount()).isEqualTo(1);
+	}
+
+	private static WeakReference<Class<?>> createModelOfCopy(OutputConfig config)
+			throws Exception {
+		Class<?> copy = loadCopy(Book.class);
+		ModelGenerator.createModel(copy, config);
+		// Spring and the JDK keep the introspection results of classes from child
+		// classloaders
+		CachedIntrospectionResults.clearClassLoader(copy.getClassLoader());
+		Introspector.flushFromCaches(copy);
+		ReflectionUtils.clearCache();
+		AnnotationUtils.clearCache();
+		return new WeakReference<>(copy);
+	}
+
+	/**
+	 * Loads the bytecode of the provided class with a new classloader. All other classes
+	 * are loaded by the parent.
+	 */
+	private static Class<?> loadCopy(Class<?> clazz) throws Exception {
+		String resource = clazz.getName().replace('.', '/') + ".class";
+		byte[] bytecode;
+		try (InputStream in = clazz.getClassLoader().getResourceAsStream(resource)) {
+			bytecode = in.readAllBytes();
+		}
+
+		ClassLoader loader = new ClassLoader(clazz.getClassLoader()) {
+			@Override
+			protected Class<?> loadClass(String name, boolean resolve)
+					throws ClassNotFoundException {
+				if (!name.equals(clazz.getName())) {
+					return super.loadClass(name, resolve);
+				}
+				synchronized (getClassLoadingLock(name)) {
+					Class<?> loaded = findLoadedClass(name);
+					if (loaded == null) {
+						loaded = defineClass(name, bytecode, 0, bytecode.length);
+					}
+					return loaded;
+				}
+			}
+		};
+		return loader.loadClass(clazz.getName());
+	}
+
 }
@@ -0,0 +1,381 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.DigestUtils;
+
+import ch.rasc.extclassgenerator.bean.Author;
+import ch.rasc.extclassgenerator.bean.BeanWithAnnotations;
+import ch.rasc.extclassgenerator.bean.Book;
+import ch.rasc.extclassgenerator.bean.Order;
+import ch.rasc.extclassgenerator.bean.Pos;
+
+public class ModelGeneratorWriteModelTest {
+
+	@BeforeEach
+	public void clearCaches() {
+		ModelGenerator.clearCaches();
+	}
+
+	private static OutputConfig outputConfig(OutputFormat format) {
+		OutputConfig outputConfig = new OutputConfig();
+		outputConfig.setIncludeValidation(IncludeValidation.NONE);
+		outputConfig.setOutputFormat(format);
+		return outputConfig;
+	}
+
+	@Test
+	public void testWriteModelHeaders() throws IOException {
+		OutputConfig outputConfig = outputConfig(OutputFormat.EXTJS5);
+		String code = ModelGenerator.generateJavascript(Book.class, outputConfig);
+		byte[] expected = code.getBytes(StandardCharsets.UTF_8);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(new MockHttpServletRequest(), response, Book.class,
+				outputConfig);
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getContentAsByteArray()).isEqualTo(expected);
+		assertThat(response.getContentLength()).isEqualTo(expected.length);
+		assertThat(response.getContentType()).startsWith("application/javascript");
+		assertThat(response.getCharacterEncoding()).isEqualTo("UTF-8");
+		assertThat(response.getHeader("ETag")).startsWith("\"2").endsWith("\"")
+				.hasSize(35);
+
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(new MockHttpServletRequest(), response,
+				ModelGenerator.createModel(Book.class, outputConfig), outputConfig);
+		assertThat(response.getContentAsByteArray()).isEqualTo(expected);
+		assertThat(response.getHeader("ETag"))
+				.isEqualTo("\"0" + DigestUtils.md5DigestAsHex(expected) + "\"");
+	}
+
+	@Test
+	public void testWriteModelFingerprint() throws IOException {
+		OutputConfig outputConfig = outputConfig(OutputFormat.EXTJS5);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(new MockHttpServletRequest(), response, Book.class,
+				outputConfig);
+		String etag = response.getHeader("ETag");
+		assertThat(etag).isEqualTo(ModelFingerprint.etag(Book.class, outputConfig));
+		assertThat(ModelGenerator.cachedModelCount()).isEqualTo(1);
+
+		ModelGenerator.clearCaches();
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("If-None-Match", etag);
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(request, response, Book.class, outputConfig);
+		assertThat(response.getStatus()).isEqualTo(304);
+		assertThat(response.getHeader("ETag")).isEqualTo(etag);
+		assertThat(ModelGenerator.cachedModelCount()).isZero();
+
+		request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", "gzip");
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(request, response, Book.class, outputConfig);
+		String gzipEtag = response.getHeader("ETag");
+		assertThat(gzipEtag).isEqualTo(etag.substring(0, etag.length() - 1) + "-gzip\"");
+
+		OutputConfig otherConfig = outputConfig(OutputFormat.EXTJS5);
+		otherConfig.setUseSingleQuotes(true);
+		assertThat(ModelFingerprint.etag(Book.class, otherConfig)).isNotEqualTo(etag);
+		assertThat(ModelFingerprint.etag(Author.class, outputConfig)).isNotEqualTo(etag);
+		assertThat(ModelFingerprint.etag(Book.class, outputConfig(OutputFormat.EXTJS5)))
+				.isEqualTo(etag);
+	}
+
+	@Test
+	public void testWriteModelNotModified() throws IOException {
+		OutputConfig outputConfig = outputConfig(OutputFormat.EXTJS4);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(new MockHttpServletRequest(), response, Book.class,
+				outputConfig);
+		String etag = response.getHeader("ETag");
+		assertThat(etag).isNotNull();
+
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("If-None-Match", etag);
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(request, response, Book.class, outputConfig);
+		assertThat(response.getStatus()).isEqualTo(304);
+		assertThat(response.getHeader("ETag")).isEqualTo(etag);
+		assertThat(response.getContentAsByteArray()).isEmpty();
+
+		request = new MockHttpServletRequest();
+		request.addHeader("If-None-Match", "\"0abc\"");
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(request, response, Book.class, outputConfig);
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getContentAsByteArray()).isNotEmpty();
+	}
+
+	@Test
+	public void testWriteModelReusesEncodedBytes() throws IOException {
+		OutputConfig outputConfig = outputConfig(OutputFormat.TOUCH2);
+		ModelBean model = ModelGenerator.createModel(Book.class, outputConfig);
+
+		MockHttpServletResponse response1 = new MockHttpServletResponse();
+		ModelGenerator.writeModel(new MockHttpServletRequest(), response1, model,
+				outputConfig);
+		MockHttpServletResponse response2 = new MockHttpServletResponse();
+		ModelGenerator.writeModel(new MockHttpServletRequest(), response2, model,
+				outputConfig);
+
+		assertThat(response2.getHeader("ETag")).isEqualTo(response1.getHeader("ETag"));
+		assertThat(response2.getContentAsByteArray())
+				.isEqualTo(response1.getContentAsByteArray());
+	}
+
+	@Test
+	public void testWriteModelDebugIsNotCached() throws IOException {
+		OutputConfig outputConfig = outputConfig(OutputFormat.EXTJS4);
+		outputConfig.setDebug(true);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(new MockHttpServletRequest(), response, Book.class,
+				outputConfig);
+		assertThat(response.getContentAsString())
+				.isEqualTo(ModelGenerator.generateJavascript(Book.class, outputConfig));
+	}
+
+	@Test
+	public void testFingerprintIgnoresUnusedLineSeparator() {
+		OutputConfig outputConfig = outputConfig(OutputFormat.EXTJS5);
+		assertThat(ModelFingerprint.etag(Book.class, outputConfig, "\r\n"))
+				.isEqualTo(ModelFingerprint.etag(Book.class, outputConfig, "\n"));
+
+		outputConfig = OutputConfig.builder().includeValidation(IncludeValidation.NONE)
+				.debug(true).lineEnding(LineEnding.LF).build();
+		assertThat(ModelFingerprint.etag(Book.class, outputConfig, "\r\n"))
+				.isEqualTo(ModelFingerprint.etag(Book.class, outputConfig, "\n"));
+
+		outputConfig = OutputConfig.builder().includeValidation(IncludeValidation.NONE)
+				.debug(true).build();
+		assertThat(ModelFingerprint.etag(Book.class, outputConfig, "\r\n"))
+				.isNotEqualTo(ModelFingerprint.etag(Book.class, outputConfig, "\n"));
+	}
+
+	@Test
+	public void testWriteModelGzip() throws IOException {
+		OutputConfig outputConfig = outputConfig(OutputFormat.EXTJS5);
+		byte[] expected = ModelGenerator
+				.generateJavascript(BeanWithAnnotations.class, outputConfig)
+				.getBytes(StandardCharsets.UTF_8);
+
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", "gzip, deflate, br");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(request, response, BeanWithAnnotations.class,
+				outputConfig);
+
+		assertThat(response.getHeader("Content-Encoding")).isEqualTo("gzip");
+		assertThat(response.getHeader("Vary")).isEqualTo("Accept-Encoding");
+		byte[] compressed = response.getContentAsByteArray();
+		assertThat(response.getContentLength()).isEqualTo(compressed.length);
+		assertThat(compressed.length).isLessThan(expected.length);
+		try (InputStream is = new GZIPInputStream(
+				new ByteArrayInputStream(compressed))) {
+			assertThat(is.readAllBytes()).isEqualTo(expected);
+		}
+
+		String gzipEtag = response.getHeader("ETag");
+		assertThat(gzipEtag).endsWith("-gzip\"");
+
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(new MockHttpServletRequest(), response,
+				BeanWithAnnotations.class, outputConfig);
+		assertThat(response.getHeader("Content-Encoding")).isNull();
+		assertThat(response.getHeader("Vary")).isEqualTo("Accept-Encoding");
+		assertThat(response.getHeader("ETag")).isNotEqualTo(gzipEtag);
+		assertThat(response.getContentAsByteArray()).isEqualTo(expected);
+
+		request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", "gzip");
+		request.addHeader("If-None-Match", gzipEtag);
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(request, response, BeanWithAnnotations.class,
+				outputConfig);
+		assertThat(response.getStatus()).isEqualTo(304);
+		assertThat(response.getHeader("Vary")).isEqualTo("Accept-Encoding");
+	}
+
+	@Test
+	public void testWriteModelGzipNotSmaller() throws IOException {
+		OutputConfig outputConfig = outputConfig(OutputFormat.EXTJS5);
+		byte[] expected = ModelGenerator.generateJavascript(Tiny.class, outputConfig)
+				.getBytes(StandardCharsets.UTF_8);
+
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", "gzip");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(request, response, Tiny.class, outputConfig);
+
+		String etag = ModelFingerprint.etag(Tiny.class, outputConfig);
+		assertThat(response.getHeader("Content-Encoding")).isNull();
+		assertThat(response.getContentAsByteArray()).isEqualTo(expected);
+		assertThat(response.getHeader("ETag")).isEqualTo(etag);
+
+		request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", "gzip");
+		request.addHeader("If-None-Match", etag);
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(request, response, Tiny.class, outputConfig);
+		assertThat(response.getStatus()).isEqualTo(304);
+		assertThat(response.getHeader("ETag")).isEqualTo(etag);
+	}
+
+	@Test
+	public void testWriteModelDeflate() throws IOException {
+		OutputConfig outputConfig = outputConfig(OutputFormat.EXTJS4);
+		byte[] expected = ModelGenerator
+				.generateJavascript(BeanWithAnnotations.class, outputConfig)
+				.getBytes(StandardCharsets.UTF_8);
+
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", "gzip;q=0.5, deflate");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ModelGenerator.writeModel(request, response, BeanWithAnnotations.class,
+				outputConfig);
+
+		assertThat(response.getHeader("Content-Encoding")).isEqualTo("deflate");
+		assertThat(response.getHeader("ETag")).endsWith("-deflate\"");
+		try (InputStream is = new InflaterInputStream(
+				new ByteArrayInputStream(response.getContentAsByteArray()))) {
+			assertThat(is.readAllBytes()).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void testWriteModels() throws IOException {
+		OutputConfig outputConfig = outputConfig(OutputFormat.EXTJS5);
+		String bookCode = ModelGenerator.generateJavascript(Book.class, outputConfig);
+		String authorCode = ModelGenerator.generateJavascript(Author.class,
+				outputConfig);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ModelGenerator.writeModels(new MockHttpServletRequest(), response,
+				List.of(Book.class, Author.class, Book.class), outputConfig);
+
+		byte[] expected = (bookCode + "\n" + authorCode)
+				.getBytes(StandardCharsets.UTF_8);
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getContentAsByteArray()).isEqualTo(expected);
+		assertThat(response.getContentLength()).isEqualTo(expected.length);
+		String etag = response.getHeader("ETag");
+		assertThat(etag).startsWith("\"1");
+
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModels(new MockHttpServletRequest(), response,
+				List.of(Author.class, Book.class), outputConfig);
+		assertThat(response.getContentAsString())
+				.isEqualTo(authorCode + "\n" + bookCode);
+		assertThat(response.getHeader("ETag")).isNotEqualTo(etag);
+
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("If-None-Match", etag);
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModels(request, response, List.of(Book.class, Author.class),
+				outputConfig);
+		assertThat(response.getStatus()).isEqualTo(304);
+
+		ModelGenerator.clearCaches();
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModels(new MockHttpServletRequest(), response,
+				List.of(Book.class, Author.class), outputConfig);
+		assertThat(response.getHeader("ETag")).isEqualTo(etag);
+	}
+
+	@Test
+	public void testWriteModelsGzip() throws IOException {
+		OutputConfig outputConfig = outputConfig(OutputFormat.EXTJS4);
+		outputConfig.setLineEnding(LineEnding.CRLF);
+		byte[] expected = (ModelGenerator.generateJavascript(Book.class, outputConfig)
+				+ "\r\n" + ModelGenerator.generateJavascript(Author.class, outputConfig))
+						.getBytes(StandardCharsets.UTF_8);
+
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", "gzip");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ModelGenerator.writeModels(request, response, List.of(Book.class, Author.class),
+				outputConfig);
+
+		assertThat(response.getHeader("Content-Encoding")).isEqualTo("gzip");
+		try (InputStream is = new GZIPInputStream(
+				new ByteArrayInputStream(response.getContentAsByteArray()))) {
+			assertThat(is.readAllBytes()).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void testCollectAssociatedClasses() {
+		assertThat(ModelGenerator.collectAssociatedClasses(Book.class))
+				.containsExactly(Author.class, Book.class);
+		assertThat(ModelGenerator.collectAssociatedClasses(Author.class))
+				.containsExactly(Book.class, Author.class);
+		assertThat(ModelGenerator.collectAssociatedClasses(Order.class))
+				.containsExactly(Pos.class, Order.class);
+		assertThat(ModelGenerator.collectAssociatedClasses(BeanWithAnnotations.class))
+				.containsExactly(BeanWithAnnotations.class);
+	}
+
+	@Test
+	public void testWriteModelWithAssociations() throws IOException {
+		OutputConfig outputConfig = outputConfig(OutputFormat.EXTJS5);
+		String expected = ModelGenerator.generateJavascript(Author.class, outputConfig)
+				+ "\n" + ModelGenerator.generateJavascript(Book.class, outputConfig);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		ModelGenerator.writeModelWithAssociations(new MockHttpServletRequest(),
+				response, Book.class, outputConfig);
+		assertThat(response.getContentAsString()).isEqualTo(expected);
+		String etag = response.getHeader("ETag");
+
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModels(new MockHttpServletRequest(), response,
+				List.of(Author.class, Book.class), outputConfig);
+		assertThat(response.getContentAsString()).isEqualTo(expected);
+		assertThat(response.getHeader("ETag")).isEqualTo(etag);
+
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader("If-None-Match", etag);
+		response = new MockHttpServletResponse();
+		ModelGenerator.writeModelWithAssociations(request, response, Book.class,
+				outputConfig);
+		assertThat(response.getStatus()).isEqualTo(304);
+	}
+
+	@Model("Tiny")
+	public static class Tiny {
+		// code too short to be compressed
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.rasc.extclassgenerator.bean.Author;
+import ch.rasc.extclassgenerator.bean.Book;
+
+public class ModelIndexTest {
+
+	@TempDir
+	Path tempDir;
+
+	private URLClassLoader createClassLoader(String... lines) throws IOException {
+		Path index = this.tempDir.resolve(ModelIndex.LOCATION);
+		Files.createDirectories(index.getParent());
+		Files.write(index, Arrays.asList(lines), ModelGenerator.UTF8_CHARSET);
+		return new URLClassLoader(new URL[] { this.tempDir.toUri().toURL() },
+				getClass().getClassLoader());
+	}
+
+	@Test
+	public void testLoad() throws IOException {
+		try (URLClassLoader loader = createClassLoader("# models", Book.class.getName(),
+				"", "ch.rasc.extclassgenerator.bean.DoesNotExist", Author.class.getName(),
+				Book.class.getName())) {
+			assertThat(ModelIndex.readClassNames(loader)).containsExactly(
+					Book.class.getName(), "ch.rasc.extclassgenerator.bean.DoesNotExist",
+					Author.class.getName());
+			assertThat(ModelIndex.load(loader)).containsExactly(Book.class,
+					Author.class);
+		}
+	}
+
+	@Test
+	public void testWarmUp() throws IOException {
+		ModelGeneratorEngine engine = new ModelGeneratorEngine();
+		OutputConfig extjs4 = OutputConfig.builder().outputFormat(OutputFormat.EXTJS4)
+				.includeValidation(IncludeValidation.NONE).build();
+		OutputConfig extjs5 = OutputConfig.builder().outputFormat(OutputFormat.EXTJS5)
+				.includeValidation(IncludeValidation.NONE).build();
+
+		try (URLClassLoader loader = createClassLoader(Book.class.getName(),
+				"ch.rasc.extclassgenerator.bean.DoesNotExist", Author.class.getName())) {
+			assertThat(engine.warmUp(loader, List.of(extjs4, extjs5))).isEqualTo(2);
+		}
+
+		// models do not depend on the output format
+		assertThat(engine.cachedModelCount()).isEqualTo(2);
+		assertThat(engine.cachedJsCount()).isEqualTo(4);
+		long hits = engine.getJsCacheStats().getHitCount();
+		engine.generateJavascript(Book.class, extjs5);
+		assertThat(engine.getJsCacheStats().getHitCount()).isEqualTo(hits + 1);
+	}
+
+	@Test
+	public void testWarmUpWithDebugConfig() throws IOException {
+		ModelGeneratorEngine engine = new ModelGeneratorEngine();
+		OutputConfig debug = OutputConfig.builder().debug(true)
+				.includeValidation(IncludeValidation.NONE).build();
+
+		try (URLClassLoader loader = createClassLoader(Book.class.getName(),
+				Author.class.getName())) {
+			assertThat(engine.warmUp(loader, List.of(debug))).isEqualTo(2);
+		}
+
+		// the code of debug configs is not cached, so it is not rendered
+		assertThat(engine.cachedModelCount()).isEqualTo(2);
+		assertThat(engine.cachedJsCount()).isZero();
+		assertThat(engine.getStatistics().getRenderCount()).isZero();
+	}
+
+	@Test
+	public void testWarmUpWithoutIndex() throws IOException {
+		ModelGeneratorEngine engine = new ModelGeneratorEngine();
+		try (URLClassLoader loader = new URLClassLoader(new URL[0], null)) {
+			assertThat(engine.warmUp(loader, List.of(OutputConfig.builder().build())))
+					.isZero();
+		}
+		assertThat(engine.cachedJsCount()).isZero();
+	}
+
+	@Test
+	public void testAnnotationProcessorWritesIndex() throws IOException {
+		Path classOutput = Files.createDirectory(this.tempDir.resolve("classes"));
+		Path sourceOutput = Files.createDirectory(this.tempDir.resolve("sources"));
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		int result = compiler.run(null, null, null, "-proc:only", "-processor",
+				ModelAnnotationProcessor.class.getName(), "-classpath",
+				System.getProperty("java.class.path"), "-d", classOutput.toString(), "-s",
+				sourceOutput.toString(),
+				"src/test/java/ch/rasc/extclassgenerator/bean/Book.java",
+				"src/test/java/ch/rasc/extclassgenerator/bean/Author.java");
+		assertThat(result).isZero();
+
+		assertThat(Files.readAllLines(classOutput.resolve(ModelIndex.LOCATION),
+				ModelGenerator.UTF8_CHARSET)).containsExactly(Author.class.getName(),
+						Book.class.getName());
+	}
+
+	@Test
+	public void testAnnotationProcessorMergesIndex() throws IOException {
+		Path classOutput = Files.createDirectory(this.tempDir.resolve("classes"));
+		Path sourceOutput = Files.createDirectory(this.tempDir.resolve("sources"));
+		Path index = classOutput.resolve(ModelIndex.LOCATION);
+		Files.createDirectories(index.getParent());
+		Files.write(index, List.of(Author.class.getName(),
+				"ch.rasc.extclassgenerator.bean.DoesNotExist", String.class.getName()),
+				ModelGenerator.UTF8_CHARSET);
+
+		// an incremental build that only recompiles Book
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		int result = compiler.run(null, null, null, "-proc:only", "-processor",
+				ModelAnnotationProcessor.class.getName(), "-classpath",
+				System.getProperty("java.class.path"), "-d", classOutput.toString(), "-s",
+				sourceOutput.toString(),
+				"src/test/java/ch/rasc/extclassgenerator/bean/Book.java");
+		assertThat(result).isZero();
+
+		assertThat(Files.readAllLines(index, ModelGenerator.UTF8_CHARSET))
+				.containsExactly(Author.class.getName(), Book.class.getName());
+	}
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import tools.jackson.databind.ObjectWriter;
+
+public class ObjectWritersTest {
+
+	private static OutputConfig outputConfig(OutputFormat format,
+			boolean surroundApiWithQuotes, boolean debug) {
+		OutputConfig outputConfig = new OutputConfig();
+		outputConfig.setOutputFormat(format);
+		outputConfig.setSurroundApiWithQuotes(surroundApiWithQuotes);
+		outputConfig.setDebug(debug);
+		return outputConfig;
+	}
+
+	@Test
+	public void testReuse() {
+		ObjectWriters objectWriters = new ObjectWriters();
+		ObjectWriter writer = objectWriters
+				.get(outputConfig(OutputFormat.EXTJS5, false, false));
+		OutputConfig other = outputConfig(OutputFormat.EXTJS5, false, false);
+		other.setLineEnding(LineEnding.CRLF);
+		other.setIncludeValidation(IncludeValidation.ALL);
+
+		assertThat(objectWriters.get(other)).isSameAs(writer);
+
+		other.setUseSingleQuotes(true);
+		assertThat(objectWriters.get(other)).isNotSameAs(writer);
+
+		OutputConfig debug = outputConfig(OutputFormat.EXTJS5, false, true);
+		ObjectWriter debugWriter = objectWriters.get(debug);
+		debug.setLineEnding(LineEnding.CRLF);
+		assertThat(objectWriters.get(debug)).isNotSameAs(debugWriter);
+		assertThat(objectWriters.get(outputConfig(null, true, true)))
+				.isSameAs(objectWriters.get(outputConfig(OutputFormat.EXTJS4, true, true)));
+	}
+
+	@Test
+	public void testOneWriterPerVariant() {
+		ObjectWriters objectWriters = new ObjectWriters();
+		Map<ObjectWriter, Boolean> writers = new IdentityHashMap<>();
+		for (OutputFormat format : OutputFormat.values()) {
+			for (boolean surroundApiWithQuotes : new boolean[] { true, false }) {
+				for (boolean debug : new boolean[] { true, false }) {
+					ObjectWriter writer = objectWriters
+							.get(outputConfig(format, surroundApiWithQuotes, debug));
+					writers.put(writer, Boolean.TRUE);
+				}
+			}
+		}
+		assertThat(writers).hasSize(12);
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+public class OutputConfigTest {
+
+	@Test
+	public void testBuilderReturnsCanonicalInstance() {
+		OutputConfig config1 = OutputConfig.builder().outputFormat(OutputFormat.EXTJS5)
+				.includeValidation(IncludeValidation.ALL).useSingleQuotes(true).build();
+		OutputConfig config2 = OutputConfig.builder().useSingleQuotes(true)
+				.includeValidation(IncludeValidation.ALL).outputFormat(OutputFormat.EXTJS5)
+				.build();
+
+		assertThat(config1).isSameAs(config2);
+		assertThat(config1.isImmutable()).isTrue();
+		assertThat(config1.getOutputFormat()).isEqualTo(OutputFormat.EXTJS5);
+		assertThat(config1.getIncludeValidation()).isEqualTo(IncludeValidation.ALL);
+		assertThat(config1.isUseSingleQuotes()).isTrue();
+		assertThat(config1.isDebug()).isFalse();
+
+		OutputConfig config3 = OutputConfig.builder().outputFormat(OutputFormat.EXTJS5)
+				.includeValidation(IncludeValidation.ALL).build();
+		assertThat(config3).isNotSameAs(config1).isNotEqualTo(config1);
+	}
+
+	@Test
+	public void testToImmutable() {
+		OutputConfig config = new OutputConfig();
+		config.setOutputFormat(OutputFormat.TOUCH2);
+		config.setIncludeValidation(IncludeValidation.BUILTIN);
+		config.setDebug(true);
+		config.setLineEnding(LineEnding.LF);
+		assertThat(config.isImmutable()).isFalse();
+
+		OutputConfig immutable = config.toImmutable();
+		assertThat(immutable).isNotSameAs(config).isEqualTo(config);
+		assertThat(immutable.hashCode()).isEqualTo(config.hashCode());
+		assertThat(immutable.toImmutable()).isSameAs(immutable);
+		assertThat(config.toImmutable()).isSameAs(immutable);
+		assertThat(OutputConfig.builder().outputFormat(OutputFormat.TOUCH2)
+				.includeValidation(IncludeValidation.BUILTIN).debug(true)
+				.lineEnding(LineEnding.LF).build()).isSameAs(immutable);
+
+		config.setDebug(false);
+		assertThat(immutable.isDebug()).isTrue();
+		assertThat(config.toImmutable()).isNotSameAs(immutable);
+	}
+
+	@Test
+	public void testImmutableSetters() {
+		OutputConfig config = OutputConfig.builder().build();
+		assertThatThrownBy(() -> config.setDebug(true))
+				.isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> config.setOutputFormat(OutputFormat.EXTJS5))
+				.isInstanceOf(IllegalStateException.class);
+		assertThat(config.isDebug()).isFalse();
+		assertThat(config.getOutputFormat()).isNull();
+	}
+
+	@Test
+	public void testKeysUseCanonicalConfig() {
+		OutputConfig config = new OutputConfig();
+		config.setOutputFormat(OutputFormat.EXTJS4);
+		ModelBean model = new ModelBean();
+		model.setName("App.Model");
+		JsCacheKey key = new JsCacheKey(model, config);
+
+		config.setOutputFormat(OutputFormat.EXTJS5);
+		assertThat(key).isNotEqualTo(new JsCacheKey(model, config));
+		config.setOutputFormat(OutputFormat.EXTJS4);
+		assertThat(key).isEqualTo(new JsCacheKey(model, config));
+	}
+
+}
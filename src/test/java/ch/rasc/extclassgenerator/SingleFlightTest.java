@@ -0,0 +1,210 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightTest {
+
+	@Test
+	public void testCoalesce() throws Exception {
+		SingleFlight<String, String> singleFlight = new SingleFlight<>();
+		AtomicInteger invocations = new AtomicInteger();
+		CountDownLatch loaderStarted = new CountDownLatch(1);
+		CountDownLatch releaseLoader = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			Future<String> leader = executor.submit(() -> singleFlight.execute("key",
+					() -> {
+						invocations.incrementAndGet();
+						loaderStarted.countDown();
+						await(releaseLoader);
+						return "value";
+					}, 10_000));
+			assertThat(loaderStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+			CountDownLatch waitersStarted = new CountDownLatch(7);
+			List<Future<String>> waiters = new ArrayList<>();
+			for (int i = 0; i < 7; i++) {
+				waiters.add(executor.submit(() -> {
+					waitersStarted.countDown();
+					return singleFlight.execute("key", () -> {
+						invocations.incrementAndGet();
+						return "other";
+					}, 10_000);
+				}));
+			}
+			assertThat(waitersStarted.await(10, TimeUnit.SECONDS)).isTrue();
+			Thread.sleep(100);
+			assertThat(waiters).noneMatch(Future::isDone);
+			releaseLoader.countDown();
+
+			assertThat(leader.get(10, TimeUnit.SECONDS)).isEqualTo("value");
+			for (Future<String> waiter : waiters) {
+				assertThat(waiter.get(10, TimeUnit.SECONDS)).isEqualTo("value");
+			}
+			assertThat(singleFlight.size()).isZero();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(invocations.get()).isEqualTo(1);
+		assertThat(singleFlight.execute("key", () -> "next", 1000)).isEqualTo("next");
+	}
+
+	@Test
+	public void testFailurePropagatesToWaiters() throws Exception {
+		SingleFlight<String, String> singleFlight = new SingleFlight<>();
+		CountDownLatch loaderStarted = new CountDownLatch(1);
+		CountDownLatch releaseLoader = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<String> leader = executor.submit(() -> singleFlight.execute("key",
+					() -> {
+						loaderStarted.countDown();
+						await(releaseLoader);
+						throw new IllegalArgumentException("broken model");
+					}, 10_000));
+			assertThat(loaderStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+			CountDownLatch waiterStarted = new CountDownLatch(1);
+			Future<String> waiter = executor.submit(() -> {
+				waiterStarted.countDown();
+				return singleFlight.execute("key", () -> "unused", 10_000);
+			});
+			assertThat(waiterStarted.await(10, TimeUnit.SECONDS)).isTrue();
+			Thread.sleep(50);
+			releaseLoader.countDown();
+
+			assertThatThrownBy(() -> leader.get(10, TimeUnit.SECONDS))
+					.hasCauseInstanceOf(IllegalArgumentException.class);
+			assertThatThrownBy(() -> waiter.get(10, TimeUnit.SECONDS))
+					.hasCauseInstanceOf(IllegalArgumentException.class)
+					.hasMessageContaining("broken model");
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		assertThat(singleFlight.size()).isZero();
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		SingleFlight<String, String> singleFlight = new SingleFlight<>();
+		CountDownLatch loaderStarted = new CountDownLatch(1);
+		CountDownLatch releaseLoader = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<String> leader = executor.submit(() -> singleFlight.execute("key",
+					() -> {
+						loaderStarted.countDown();
+						await(releaseLoader);
+						return "value";
+					}, 10_000));
+			assertThat(loaderStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+			assertThatThrownBy(() -> singleFlight.execute("key", () -> "other", 20))
+					.isInstanceOf(IllegalStateException.class)
+					.hasCauseInstanceOf(TimeoutException.class);
+
+			releaseLoader.countDown();
+			assertThat(leader.get(10, TimeUnit.SECONDS)).isEqualTo("value");
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testWaiterIsNotACacheHit() throws Exception {
+		SingleFlight<String, String> singleFlight = new SingleFlight<>();
+		CountDownLatch loaderStarted = new CountDownLatch(1);
+		CountDownLatch releaseLoader = new CountDownLatch(1);
+		List<GenerationListener> listeners = List.of(event -> {
+			// nothing here
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<GenerationTrace> leader = executor.submit(() -> {
+				GenerationTrace trace = GenerationTrace.begin(listeners);
+				try {
+					singleFlight.execute("key", () -> {
+						loaderStarted.countDown();
+						await(releaseLoader);
+						GenerationTrace.recordPhase(GenerationEvent.Phase.RENDERING, 1);
+						return "value";
+					}, 10_000);
+					return trace;
+				}
+				finally {
+					GenerationTrace.end(trace);
+				}
+			});
+			assertThat(loaderStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+			Future<GenerationTrace> waiter = executor.submit(() -> {
+				GenerationTrace trace = GenerationTrace.begin(listeners);
+				try {
+					singleFlight.execute("key", () -> "other", 10_000);
+					return trace;
+				}
+				finally {
+					GenerationTrace.end(trace);
+				}
+			});
+			Thread.sleep(50);
+			releaseLoader.countDown();
+
+			GenerationTrace leaderTrace = leader.get(10, TimeUnit.SECONDS);
+			assertThat(leaderTrace.isCacheHit()).isFalse();
+			assertThat(leaderTrace.isCoalesced()).isFalse();
+			GenerationTrace waiterTrace = waiter.get(10, TimeUnit.SECONDS);
+			assertThat(waiterTrace.isCacheHit()).isFalse();
+			assertThat(waiterTrace.isCoalesced()).isTrue();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import ch.rasc.extclassgenerator.association.HasManyAssociation;
+import ch.rasc.extclassgenerator.validation.LengthValidation;
+import ch.rasc.extclassgenerator.validation.PresenceValidation;
+
+public class StructuralHashTest {
+
+	private static ModelBean createModel() {
+		ModelBean model = new ModelBean();
+		model.setName("App.User");
+		model.setReadMethod("userService.read");
+		model.addField(new ModelFieldBean("id", ModelType.INTEGER));
+		model.addField(new ModelFieldBean("name", ModelType.STRING));
+		model.addValidation(new PresenceValidation("name"));
+		model.addAssociation(new HasManyAssociation("App.Role"));
+		return model;
+	}
+
+	@Test
+	public void testEqualModels() {
+		assertThat(StructuralHash.of(createModel()))
+				.isEqualTo(StructuralHash.of(createModel()));
+		assertThat(StructuralHash.of(new ModelBean()))
+				.isEqualTo(StructuralHash.of(new ModelBean()));
+		assertThat(StructuralHash.of(createModel()))
+				.isNotEqualTo(StructuralHash.of(new ModelBean()));
+	}
+
+	@Test
+	public void testChangedModel() {
+		ModelBean model = createModel();
+		long hash = StructuralHash.of(model);
+
+		model.setPaging(true);
+		assertThat(StructuralHash.of(model)).isNotEqualTo(hash);
+		model.setPaging(false);
+		assertThat(StructuralHash.of(model)).isEqualTo(hash);
+
+		model.getField("name").setUseNull(Boolean.TRUE);
+		assertThat(StructuralHash.of(model)).isNotEqualTo(hash);
+
+		model = createModel();
+		model.getField("id").setModelType(ModelType.STRING);
+		assertThat(StructuralHash.of(model)).isNotEqualTo(hash);
+
+		model = createModel();
+		model.getAssociations().get(0).setForeignKey("roleId");
+		assertThat(StructuralHash.of(model)).isNotEqualTo(hash);
+
+		model = createModel();
+		model.getValidations().set(0, new LengthValidation("name", 1L, null));
+		assertThat(StructuralHash.of(model)).isNotEqualTo(hash);
+	}
+
+	@Test
+	public void testFieldOrder() {
+		ModelBean model1 = new ModelBean();
+		model1.addField(new ModelFieldBean("a", ModelType.STRING));
+		model1.addField(new ModelFieldBean("b", ModelType.STRING));
+
+		ModelBean model2 = new ModelBean();
+		model2.addField(new ModelFieldBean("b", ModelType.STRING));
+		model2.addField(new ModelFieldBean("a", ModelType.STRING));
+
+		assertThat(StructuralHash.of(model1)).isNotEqualTo(StructuralHash.of(model2));
+	}
+
+}
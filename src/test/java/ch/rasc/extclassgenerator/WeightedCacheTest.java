@@ -0,0 +1,229 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.extclassgenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class WeightedCacheTest {
+
+	private static WeightedCache<String, String> createCache(long maximumWeight) {
+		return new WeightedCache<>(maximumWeight, String::length,
+				key -> key.startsWith("pinned"));
+	}
+
+	@Test
+	public void testWeight() {
+		WeightedCache<String, String> cache = createCache(100);
+		cache.put("a", "1234567890");
+		cache.put("b", "12345");
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.weightedSize()).isEqualTo(15);
+
+		cache.put("a", "123");
+		assertThat(cache.weightedSize()).isEqualTo(8);
+
+		cache.invalidate("b");
+		assertThat(cache.weightedSize()).isEqualTo(3);
+		assertThat(cache.get("b")).isNull();
+
+		cache.clear();
+		assertThat(cache.size()).isZero();
+		assertThat(cache.weightedSize()).isZero();
+	}
+
+	@Test
+	public void testEvictsLeastFrequentlyUsed() {
+		WeightedCache<String, String> cache = createCache(20);
+		cache.put("hot", "1234567890");
+		cache.put("cold", "1234567890");
+		for (int i = 0; i < 5; i++) {
+			assertThat(cache.get("hot")).isNotNull();
+			assertThat(cache.get("new")).isNull();
+		}
+		cache.get("cold");
+
+		cache.put("new", "1234567890");
+
+		assertThat(cache.weightedSize()).isEqualTo(20);
+		assertThat(cache.get("hot")).isNotNull();
+		assertThat(cache.get("new")).isNotNull();
+		assertThat(cache.get("cold")).isNull();
+	}
+
+	@Test
+	public void testRejectsRarelyUsedNewEntry() {
+		WeightedCache<String, String> cache = createCache(20);
+		cache.put("a", "1234567890");
+		cache.put("b", "1234567890");
+		for (int i = 0; i < 3; i++) {
+			cache.get("a");
+			cache.get("b");
+		}
+
+		cache.put("c", "1234567890");
+
+		assertThat(cache.get("c")).isNull();
+		assertThat(cache.get("a")).isNotNull();
+		assertThat(cache.get("b")).isNotNull();
+	}
+
+	@Test
+	public void testPinned() {
+		WeightedCache<String, String> cache = createCache(20);
+		cache.put("pinned1", "1234567890");
+		cache.put("pinned2", "1234567890");
+		for (int i = 0; i < 5; i++) {
+			cache.get("other");
+		}
+
+		cache.put("other", "1234567890");
+
+		assertThat(cache.get("other")).isNull();
+		assertThat(cache.get("pinned1")).isNotNull();
+		assertThat(cache.get("pinned2")).isNotNull();
+
+		cache.setMaximumWeight(0);
+		assertThat(cache.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void testSampledEvictionKeepsHotEntries() {
+		WeightedCache<String, String> cache = createCache(1000);
+		for (int i = 0; i < 10; i++) {
+			cache.put("hot" + i, "1234567890");
+			for (int j = 0; j < 10; j++) {
+				cache.get("hot" + i);
+			}
+		}
+		for (int i = 0; i < 1000; i++) {
+			cache.get("cold" + i);
+			cache.put("cold" + i, "1234567890");
+		}
+
+		assertThat(cache.size()).isEqualTo(100);
+		assertThat(cache.weightedSize()).isEqualTo(1000);
+		for (int i = 0; i < 10; i++) {
+			assertThat(cache.get("hot" + i)).isNotNull();
+		}
+	}
+
+	@Test
+	public void testSampleWithOnlyPinnedEntries() {
+		WeightedCache<String, String> cache = createCache(100);
+		cache.put("other", "1234567890");
+		for (int i = 0; i < 10 * WeightedCache.EVICTION_SAMPLE_SIZE; i++) {
+			cache.put("pinned" + i, "1234567890");
+		}
+
+		assertThat(cache.get("other")).isNull();
+		assertThat(cache.size()).isEqualTo(10 * WeightedCache.EVICTION_SAMPLE_SIZE);
+	}
+
+	@Test
+	public void testShrinkMaximumWeight() {
+		WeightedCache<String, String> cache = createCache(100);
+		for (int i = 0; i < 10; i++) {
+			cache.put("key" + i, "1234567890");
+		}
+		assertThat(cache.size()).isEqualTo(10);
+
+		cache.setMaximumWeight(35);
+		assertThat(cache.size()).isEqualTo(3);
+		assertThat(cache.weightedSize()).isEqualTo(30);
+		assertThat(cache.getMaximumWeight()).isEqualTo(35);
+
+		cache.setMaximumWeight(0);
+		assertThat(cache.size()).isZero();
+	}
+
+	@Test
+	public void testRemoveIf() {
+		List<String> removed = new ArrayList<>();
+		WeightedCache<String, String> cache = new WeightedCache<>(100, String::length,
+				key -> key.startsWith("pinned"),
+				(key, value, cause) -> removed.add(key + "=" + value + ":" + cause));
+		cache.put("a1", "12345");
+		cache.put("a2", "12345");
+		cache.put("pinned", "12345");
+		cache.put("b", "12345");
+
+		cache.invalidateAll((key, value) -> key.startsWith("a") || key.startsWith("pinned"),
+				RemovalCause.INVALIDATED);
+
+		assertThat(cache.size()).isEqualTo(1);
+		assertThat(cache.weightedSize()).isEqualTo(5);
+		assertThat(cache.get("b")).isNotNull();
+		assertThat(removed).containsExactlyInAnyOrder("a1=12345:INVALIDATED",
+				"a2=12345:INVALIDATED", "pinned=12345:INVALIDATED");
+	}
+
+	@Test
+	public void testRemovalListener() {
+		List<String> removed = new ArrayList<>();
+		WeightedCache<String, String> cache = new WeightedCache<>(20, String::length,
+				key -> false, (key, value, cause) -> removed.add(key + ":" + cause));
+		cache.put("a", "1234567890");
+		cache.get("a");
+		cache.put("b", "1234567890");
+		cache.get("b");
+		cache.put("a", "1234567890");
+		assertThat(removed).isEmpty();
+
+		cache.put("c", "1234567890");
+		assertThat(removed).containsExactly("c:EVICTED");
+
+		cache.invalidate("a");
+		cache.clear();
+		assertThat(removed).containsExactly("c:EVICTED", "a:INVALIDATED", "b:CLEARED");
+	}
+
+	@Test
+	public void testComputeIfAbsentAndStats() {
+		WeightedCache<String, String> cache = createCache(20);
+		assertThat(cache.get("a")).isNull();
+		assertThat(cache.computeIfAbsent("a", key -> "1234567890")).isEqualTo("1234567890");
+		assertThat(cache.computeIfAbsent("a", key -> "other")).isEqualTo("1234567890");
+		assertThat(cache.get("a")).isEqualTo("1234567890");
+		cache.put("b", "1234567890");
+		cache.get("b");
+		cache.put("c", "1234567890");
+
+		CacheStats stats = cache.stats();
+		assertThat(stats.getHitCount()).isEqualTo(2);
+		assertThat(stats.getMissCount()).isEqualTo(1);
+		assertThat(stats.getEvictionCount()).isEqualTo(1);
+		assertThat(stats.getEntryCount()).isEqualTo(2);
+		assertThat(stats.getWeightedSize()).isEqualTo(20);
+	}
+
+	@Test
+	public void testFrequencySketch() {
+		WeightedCache.FrequencySketch sketch = new WeightedCache.FrequencySketch();
+		assertThat(sketch.frequency("a".hashCode())).isZero();
+		for (int i = 0; i < 20; i++) {
+			sketch.increment("a".hashCode());
+		}
+		sketch.increment("b".hashCode());
+		assertThat(sketch.frequency("a".hashCode())).isEqualTo(15);
+		assertThat(sketch.frequency("b".hashCode())).isEqualTo(1);
+	}
+
+}